@@ -0,0 +1,104 @@
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.core.Example;
+import moa.evaluation.BasicClassificationPerformanceEvaluator;
+import moa.evaluation.FusedClassificationPerformanceEvaluator;
+import moa.evaluation.LearningPerformanceEvaluator;
+import moa.streams.ExampleStream;
+import moa.streams.generators.AgrawalGenerator;
+import moa.streams.generators.LEDGeneratorDrift;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of {@code addResult} of the basic and the fused cumulative classification evaluator.
+ * The examples and the class votes are precomputed, so only the evaluator bookkeeping is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassificationEvaluatorBenchmark {
+
+    private static final int NUM_EXAMPLES = 10000;
+
+    @Param({"basic", "fused"})
+    public String evaluator;
+
+    // Agrawal has 2 classes, LED has 10
+    @Param({"agrawal", "led"})
+    public String stream;
+
+    private Example<Instance>[] examples;
+    private double[][] votes;
+    private LearningPerformanceEvaluator<Example<Instance>> performanceEvaluator;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUpData() {
+        ExampleStream<Example<Instance>> exampleStream;
+        if (stream.equals("agrawal")) {
+            AgrawalGenerator generator = new AgrawalGenerator();
+            generator.instanceRandomSeedOption.setValue(1);
+            exampleStream = generator;
+        } else {
+            LEDGeneratorDrift generator = new LEDGeneratorDrift();
+            generator.instanceRandomSeedOption.setValue(1);
+            generator.numberAttributesDriftOption.setValue(3);
+            exampleStream = generator;
+        }
+        ((moa.options.OptionHandler) exampleStream).prepareForUse();
+
+        Classifier learner = new NaiveBayes();
+        learner.setModelContext(exampleStream.getHeader());
+        learner.prepareForUse();
+
+        examples = new Example[NUM_EXAMPLES];
+        votes = new double[NUM_EXAMPLES][];
+        for (int i = 0; i < NUM_EXAMPLES; i++) {
+            examples[i] = exampleStream.nextInstance();
+            votes[i] = learner.getVotesForInstance(examples[i].getData());
+            learner.trainOnInstance(examples[i].getData());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpEvaluator() {
+        if (evaluator.equals("basic")) {
+            BasicClassificationPerformanceEvaluator basic = new BasicClassificationPerformanceEvaluator();
+            basic.prepareForUse();
+            performanceEvaluator = basic;
+        } else {
+            FusedClassificationPerformanceEvaluator fused = new FusedClassificationPerformanceEvaluator();
+            fused.prepareForUse();
+            performanceEvaluator = fused;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_EXAMPLES)
+    public moa.core.Measurement[] addResult() {
+        for (int i = 0; i < NUM_EXAMPLES; i++) {
+            performanceEvaluator.addResult(examples[i], votes[i]);
+        }
+        return performanceEvaluator.getPerformanceMeasurements();
+    }
+}
@@ -0,0 +1,88 @@
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.options.ClassOption;
+import moa.streams.InstanceStream;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Learners and streams shared by the learner benchmarks.
+ * All streams use fixed seeds, so every run trains on the same data.
+ */
+final class LearnerBenchmarkData {
+
+    private static final Map<String, String> LEARNERS = new HashMap<>();
+    private static final Map<String, String> STREAMS = new HashMap<>();
+
+    static {
+        LEARNERS.put("PLASTIC", "trees.PLASTIC");
+        LEARNERS.put("PLASTICA", "trees.PLASTICA");
+        LEARNERS.put("CustomEFDT", "trees.CustomEFDT");
+        LEARNERS.put("EFHAT", "trees.EFHAT");
+        LEARNERS.put("CustomHT", "trees.CustomHT");
+        LEARNERS.put("HoeffdingTree", "trees.HoeffdingTree");
+
+        STREAMS.put("RandomRBFGenerator", "generators.RandomRBFGenerator -r 1 -i 1");
+        STREAMS.put("AgrawalGenerator", "generators.AgrawalGenerator -i 1");
+        STREAMS.put("LEDGeneratorDrift", "generators.LEDGeneratorDrift -i 1 -d 3");
+        STREAMS.put("SEAGenerator", "generators.SEAGenerator -i 1");
+    }
+
+    private LearnerBenchmarkData() {
+    }
+
+    /**
+     * @param stream the name of the stream
+     * @return the prepared stream
+     */
+    static InstanceStream newStream(String stream) {
+        String cliString = STREAMS.get(stream);
+        if (cliString == null)
+            throw new IllegalArgumentException("Unknown stream: " + stream);
+        try {
+            InstanceStream instanceStream = (InstanceStream) ClassOption.cliStringToObject(cliString, InstanceStream.class, null);
+            ((moa.options.OptionHandler) instanceStream).prepareForUse();
+            return instanceStream;
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to create stream: " + cliString, e);
+        }
+    }
+
+    /**
+     * @param stream the prepared stream
+     * @param numInstances the number of instances to read
+     * @return the next instances of the stream
+     */
+    static Instance[] read(InstanceStream stream, int numInstances) {
+        Instance[] instances = new Instance[numInstances];
+        for (int i = 0; i < numInstances; i++)
+            instances[i] = stream.nextInstance().getData();
+        return instances;
+    }
+
+    /**
+     * @param learner the name of the learner
+     * @param options additional options appended to the command line of the learner
+     * @param header the header of the stream
+     * @return the prepared learner
+     */
+    static Classifier newLearner(String learner, String options, InstancesHeader header) {
+        String cliString = LEARNERS.get(learner);
+        if (cliString == null)
+            throw new IllegalArgumentException("Unknown learner: " + learner);
+        if (!options.isEmpty())
+            cliString += " " + options;
+        try {
+            Classifier classifier = (Classifier) ClassOption.cliStringToObject(cliString, Classifier.class, null);
+            classifier.setModelContext(header);
+            classifier.prepareForUse();
+            return classifier;
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to create learner: " + cliString, e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code getVotesForInstance} on a learner trained on the first instances of the stream,
+ * predicting the following instances. Run with {@code -prof gc} to also get the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LearnerPredictionBenchmark {
+
+    private static final int NUM_TRAINING_INSTANCES = 20000;
+    private static final int NUM_TEST_INSTANCES = 5000;
+
+    @Param({"PLASTIC", "PLASTICA", "CustomEFDT", "EFHAT", "CustomHT", "HoeffdingTree"})
+    public String learner;
+
+    @Param({"RandomRBFGenerator", "AgrawalGenerator", "LEDGeneratorDrift", "SEAGenerator"})
+    public String stream;
+
+    private Instance[] testInstances;
+    private Classifier classifier;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InstanceStream instanceStream = LearnerBenchmarkData.newStream(stream);
+        classifier = LearnerBenchmarkData.newLearner(learner, "", instanceStream.getHeader());
+        for (Instance instance : LearnerBenchmarkData.read(instanceStream, NUM_TRAINING_INSTANCES))
+            classifier.trainOnInstance(instance);
+        testInstances = LearnerBenchmarkData.read(instanceStream, NUM_TEST_INSTANCES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_TEST_INSTANCES)
+    public void getVotesForInstance(Blackhole blackhole) {
+        for (Instance instance : testInstances)
+            blackhole.consume(classifier.getVotesForInstance(instance));
+    }
+}
@@ -0,0 +1,66 @@
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code trainOnInstance}: each invocation trains a new learner on the same instances.
+ * Run with {@code -prof gc} to also get the allocation rate per instance ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LearnerTrainingBenchmark {
+
+    private static final int NUM_INSTANCES = 20000;
+
+    @Param({"PLASTIC", "PLASTICA", "CustomEFDT", "EFHAT", "CustomHT", "HoeffdingTree"})
+    public String learner;
+
+    @Param({"RandomRBFGenerator", "AgrawalGenerator", "LEDGeneratorDrift", "SEAGenerator"})
+    public String stream;
+
+    private InstancesHeader header;
+    private Instance[] instances;
+    private Classifier classifier;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        InstanceStream instanceStream = LearnerBenchmarkData.newStream(stream);
+        header = instanceStream.getHeader();
+        instances = LearnerBenchmarkData.read(instanceStream, NUM_INSTANCES);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpLearner() {
+        classifier = LearnerBenchmarkData.newLearner(learner, "", header);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_INSTANCES)
+    public Classifier trainOnInstance() {
+        for (Instance instance : instances)
+            classifier.trainOnInstance(instance);
+        return classifier;
+    }
+}
@@ -0,0 +1,77 @@
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of single {@code trainOnInstance} calls with frequent split re-evaluations.
+ * The tail percentiles (p0.99 and above) are dominated by the re-evaluations that restructure (PLASTIC)
+ * or replace (CustomEFDT) a subtree.
+ * <p>
+ *     The learner is trained on a fixed sequence of instances and starts over with a new learner
+ *     when the sequence is exhausted, so every iteration sees the same growth of the tree.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RestructuringLatencyBenchmark {
+
+    private static final int NUM_INSTANCES = 100000;
+
+    @Param({"PLASTIC", "CustomEFDT"})
+    public String learner;
+
+    @Param({"RandomRBFGenerator", "AgrawalGenerator", "LEDGeneratorDrift", "SEAGenerator"})
+    public String stream;
+
+    @Param({"-g 50 -R 50"})
+    public String options;
+
+    private InstancesHeader header;
+    private Instance[] instances;
+    private Classifier classifier;
+    private int position;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        InstanceStream instanceStream = LearnerBenchmarkData.newStream(stream);
+        header = instanceStream.getHeader();
+        instances = LearnerBenchmarkData.read(instanceStream, NUM_INSTANCES);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpLearner() {
+        classifier = LearnerBenchmarkData.newLearner(learner, options, header);
+        position = 0;
+    }
+
+    @Benchmark
+    public Classifier trainOnInstance() {
+        if (position == instances.length) {
+            classifier = LearnerBenchmarkData.newLearner(learner, options, header);
+            position = 0;
+        }
+        classifier.trainOnInstance(instances[position++]);
+        return classifier;
+    }
+}
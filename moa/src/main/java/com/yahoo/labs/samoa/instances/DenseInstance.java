@@ -56,4 +56,16 @@ public class DenseInstance extends InstanceImpl {
     public DenseInstance(double numberAttributes) {
         super((int) numberAttributes);
     }
+
+    /**
+     * Gets the attribute values without copying them. The returned array must not be modified.
+     *
+     * @return the attribute values, or null if the values are not stored in a dense array
+     */
+    public double[] getAttributeValuesRef() {
+        if (this.instanceData instanceof DenseInstanceData) {
+            return ((DenseInstanceData) this.instanceData).attributeValues;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,657 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads an Arff file with sparse or dense format from bytes.
+ * <p>
+ * The header is parsed by {@link ArffLoader}. The data section is tokenized directly on a byte buffer
+ * instead of going through a Reader and a StreamTokenizer: numeric values are parsed from the bytes,
+ * and nominal values are resolved with a hash table per attribute that is keyed by the encoded labels,
+ * so no String is created per value. Tokens that need decoding (escape sequences, unknown labels,
+ * numbers the fast path cannot convert exactly) fall back to the same conversions as ArffLoader,
+ * so both loaders give the same instances.
+ * <p>
+ * The bytes are decoded with the default charset, as by ArffLoader over an InputStreamReader.
+ * This requires a charset in which the ASCII characters are encoded as single bytes that do not occur
+ * in the encoding of other characters, see {@link #supportsCharset(Charset)}.
+ */
+public class FastArffLoader extends ArffLoader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    // bytes that end an unquoted value, as in the syntax of the StreamTokenizer of ArffLoader
+    private static final boolean[] DELIMITERS = new boolean[256];
+
+    static {
+        for (int c = 0; c <= ' '; c++) {
+            DELIMITERS[c] = true;
+        }
+        for (char c : new char[]{',', '%', '{', '}', '\'', '"'}) {
+            DELIMITERS[c] = true;
+        }
+    }
+
+    private final Charset charset;
+
+    private final InputStream stream;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    // the current value: the bytes in [valueStart, valueEnd) of the buffer, or the decoded String if it has escapes
+    private int valueStart;
+    private int valueEnd;
+    private String escapedValue;
+
+    private final NominalValueTable[] nominalValueTables;
+
+    private int[] sparseIndices = new int[16];
+    private double[] sparseValues = new double[16];
+
+    /**
+     * Instantiates a new fast arff loader.
+     *
+     * @param stream the stream, positioned at the start of the file
+     * @param classAttribute the class attribute, see {@link ArffLoader#ArffLoader(Reader, int, int)}
+     * @throws IOException if the header cannot be read
+     */
+    public FastArffLoader(InputStream stream, int classAttribute) throws IOException {
+        this(new HeaderScanner(stream), classAttribute);
+    }
+
+    private FastArffLoader(HeaderScanner header, int classAttribute) throws IOException {
+        super(header.readHeader(), 0, classAttribute);
+        this.charset = Charset.defaultCharset();
+        this.stream = header.stream;
+        this.buffer = header.buffer;
+        this.position = header.position;
+        this.limit = header.limit;
+        this.nominalValueTables = new NominalValueTable[this.instanceInformation.numAttributes()];
+        for (int i = 0; i < this.nominalValueTables.length; i++) {
+            Attribute attribute = this.instanceInformation.attribute(i);
+            if (attribute.isNominal()) {
+                this.nominalValueTables[i] = new NominalValueTable(attribute, this.charset);
+            }
+        }
+    }
+
+    /**
+     * Checks if the data of a file in the provided charset can be tokenized on bytes.
+     *
+     * @param charset the charset of the file
+     * @return true for UTF-8, ASCII and the single byte ISO-8859 and Windows charsets
+     */
+    public static boolean supportsCharset(Charset charset) {
+        String name = charset.name();
+        return name.equals("UTF-8") || name.equals("US-ASCII")
+                || name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+    }
+
+    /**
+     * Reads instance. It detects if it is dense or sparse.
+     *
+     * @return the instance, or null at the end of the file
+     */
+    @Override
+    public Instance readInstance() {
+        try {
+            int c = skipToValue();
+            if (c == -1) {
+                return null;
+            }
+            if (c == '{') {
+                this.position++;
+                return readSparseValues();
+            }
+            double[] values = new double[this.instanceInformation.numAttributes()];
+            readDenseValues(values);
+            return new DenseInstance(1.0, values);
+        } catch (IOException ex) {
+            Logger.getLogger(FastArffLoader.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the values of the next instance into the provided array if it is a dense instance.
+     *
+     * @param values the array to write the values to, with one entry per attribute
+     * @return false at the end of the file or if the next instance is sparse, which is then left to readInstance
+     * @throws IOException if reading fails
+     */
+    public boolean readDenseInstance(double[] values) throws IOException {
+        int c = skipToValue();
+        if (c == -1 || c == '{') {
+            return false;
+        }
+        readDenseValues(values);
+        return true;
+    }
+
+    /**
+     * Reads the values of the next dense instance into the provided array.
+     * Values that are not in the file are set to 0, as in a new dense instance.
+     *
+     * @param values the array to write the values to, with one entry per attribute
+     * @return the number of values read, or 0 at the end of the file
+     * @throws IOException if reading fails
+     */
+    public int readDenseValues(double[] values) throws IOException {
+        int numValues = 0;
+        int c = skipToValue();
+        while (c != -1 && c != '\n' && c != '\r') {
+            if (c == '{' || c == '}') {
+                this.position++;  // not valid in a dense instance, ignored like the StreamTokenizer of ArffLoader
+            } else {
+                readValue(c);
+                values[numValues] = parseValue(numValues);
+                numValues++;
+            }
+            c = skipInLine();
+        }
+        Arrays.fill(values, numValues, values.length, 0.0);
+        return numValues;
+    }
+
+    private Instance readSparseValues() throws IOException {
+        int numValues = 0;
+        int c = skipInLine();
+        while (c != -1 && c != '\n' && c != '\r' && c != '}') {
+            if (c == '{') {
+                this.position++;
+                c = skipInLine();
+                continue;
+            }
+            readValue(c);
+            int index = Integer.parseInt(valueAsString());
+            c = skipInLine();
+            if (c == -1 || c == '\n' || c == '\r' || c == '{' || c == '}') {
+                break;
+            }
+            if (numValues == this.sparseIndices.length) {
+                this.sparseIndices = Arrays.copyOf(this.sparseIndices, 2 * numValues);
+                this.sparseValues = Arrays.copyOf(this.sparseValues, 2 * numValues);
+            }
+            this.sparseIndices[numValues] = index;
+            readValue(c);
+            this.sparseValues[numValues] = parseValue(index);
+            numValues++;
+            c = skipInLine();
+        }
+        skipLine();
+        return new SparseInstance(1.0, Arrays.copyOf(this.sparseValues, numValues),
+                Arrays.copyOf(this.sparseIndices, numValues), this.instanceInformation.numAttributes());
+    }
+
+    private double parseValue(int attributeIndex) {
+        if (this.escapedValue == null && this.valueEnd - this.valueStart == 1 && this.buffer[this.valueStart] == '?') {
+            return Double.NaN;
+        }
+        NominalValueTable nominalValues = this.nominalValueTables[attributeIndex];
+        if (nominalValues == null) {
+            return this.escapedValue == null ? parseNumber(this.buffer, this.valueStart, this.valueEnd)
+                    : Double.parseDouble(this.escapedValue);
+        }
+        if (this.escapedValue == null) {
+            int index = nominalValues.get(this.buffer, this.valueStart, this.valueEnd);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        return nominalValues.add(valueAsString());
+    }
+
+    private String valueAsString() {
+        if (this.escapedValue != null) {
+            return this.escapedValue;
+        }
+        return new String(this.buffer, this.valueStart, this.valueEnd - this.valueStart, this.charset);
+    }
+
+    /**
+     * Parses a decimal number. Numbers with at most 15 significant digits and a small exponent are
+     * converted exactly with one multiplication or division; all others are parsed by Double.parseDouble.
+     */
+    static double parseNumber(byte[] bytes, int start, int end) {
+        int i = start;
+        boolean isNegative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            isNegative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int numSignificantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+            hasDigits = true;
+            if (mantissa != 0 || bytes[i] != '0') {
+                if (++numSignificantDigits > 15) {
+                    return parseNumberSlow(bytes, start, end);
+                }
+            }
+            mantissa = 10 * mantissa + (bytes[i] - '0');
+            i++;
+        }
+        if (i < end && bytes[i] == '.') {
+            i++;
+            while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+                hasDigits = true;
+                if (mantissa != 0 || bytes[i] != '0') {
+                    if (++numSignificantDigits > 15) {
+                        return parseNumberSlow(bytes, start, end);
+                    }
+                }
+                mantissa = 10 * mantissa + (bytes[i] - '0');
+                exponent--;
+                i++;
+            }
+        }
+        if (!hasDigits) {
+            return parseNumberSlow(bytes, start, end);
+        }
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean isNegativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                isNegativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            int exponentStart = i;
+            while (i < end && bytes[i] >= '0' && bytes[i] <= '9' && explicitExponent < 1000) {
+                explicitExponent = 10 * explicitExponent + (bytes[i] - '0');
+                i++;
+            }
+            if (i == exponentStart) {
+                return parseNumberSlow(bytes, start, end);
+            }
+            exponent += isNegativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end || exponent < -22 || exponent > 22) {
+            return parseNumberSlow(bytes, start, end);
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return isNegative ? -value : value;
+    }
+
+    private static double parseNumberSlow(byte[] bytes, int start, int end) {
+        // the bytes of a valid number are ASCII
+        return Double.parseDouble(new String(bytes, start, end - start, Charset.forName("ISO-8859-1")));
+    }
+
+    /**
+     * Reads the value starting at the current position
+     *
+     * @param c the first byte of the value
+     */
+    private void readValue(int c) throws IOException {
+        this.escapedValue = null;
+        if (c == '\'' || c == '"') {
+            readQuotedValue((byte) c);
+            return;
+        }
+        int i = this.position;
+        while (true) {
+            while (i < this.limit && !DELIMITERS[this.buffer[i] & 0xFF]) {
+                i++;
+            }
+            if (i < this.limit) {
+                break;
+            }
+            int length = i - this.position;
+            boolean hasMoreBytes = fill();
+            i = this.position + length;
+            if (!hasMoreBytes) {
+                break;
+            }
+        }
+        this.valueStart = this.position;
+        this.valueEnd = i;
+        this.position = i;
+    }
+
+    private void readQuotedValue(byte quote) throws IOException {
+        this.position++;  // the opening quote
+        boolean hasEscapes = false;
+        int i = this.position;
+        while (true) {
+            while (i < this.limit) {
+                byte b = this.buffer[i];
+                if (b == quote || b == '\n' || b == '\r') {
+                    break;
+                }
+                if (b == '\\') {
+                    hasEscapes = true;
+                    i++;  // the escaped byte never ends the value
+                }
+                i++;
+            }
+            if (i < this.limit) {
+                break;
+            }
+            int length = i - this.position;
+            boolean hasMoreBytes = fill();
+            i = this.position + length;
+            if (!hasMoreBytes) {
+                i = this.limit;
+                break;
+            }
+        }
+        this.valueStart = this.position;
+        this.valueEnd = i;
+        this.position = i < this.limit && this.buffer[i] == quote ? i + 1 : i;  // a line break ends the value as well
+        if (hasEscapes) {
+            this.escapedValue = unescape(new String(this.buffer, this.valueStart, this.valueEnd - this.valueStart, this.charset));
+        }
+    }
+
+    /**
+     * Resolves the escape sequences of a quoted value like StreamTokenizer
+     */
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i++);
+            if (c != '\\' || i == value.length()) {
+                sb.append(c);
+                continue;
+            }
+            c = value.charAt(i++);
+            if (c >= '0' && c <= '7') {
+                char first = c;
+                int code = c - '0';
+                if (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '7') {
+                    code = (code << 3) + (value.charAt(i++) - '0');
+                    if (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '7' && first <= '3') {
+                        code = (code << 3) + (value.charAt(i++) - '0');
+                    }
+                }
+                sb.append((char) code);
+                continue;
+            }
+            switch (c) {
+                case 'a': sb.append((char) 0x7); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append((char) 0xC); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'v': sb.append((char) 0xB); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Skips separators, line breaks and comments
+     *
+     * @return the first byte of the next value, '{', '}', or -1 at the end of the file
+     */
+    private int skipToValue() throws IOException {
+        while (true) {
+            int c = skipInLine();
+            if (c == '\n' || c == '\r') {
+                this.position++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * Skips separators and comments in the current line
+     *
+     * @return the first byte of the next value, '{', '}', a line break, or -1 at the end of the file
+     */
+    private int skipInLine() throws IOException {
+        while (true) {
+            if (this.position == this.limit && !fill()) {
+                return -1;
+            }
+            int c = this.buffer[this.position] & 0xFF;
+            if (c == '%') {
+                skipLine();
+            } else if ((c <= ' ' && c != '\n' && c != '\r') || c == ',') {
+                this.position++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of the current line, up to (but not including) the line break
+     */
+    private void skipLine() throws IOException {
+        while (true) {
+            if (this.position == this.limit && !fill()) {
+                return;
+            }
+            byte b = this.buffer[this.position];
+            if (b == '\n' || b == '\r') {
+                return;
+            }
+            this.position++;
+        }
+    }
+
+    /**
+     * Reads more bytes into the buffer. The bytes from the current position on are moved to the front,
+     * so the position is 0 afterwards.
+     *
+     * @return false at the end of the file
+     */
+    private boolean fill() throws IOException {
+        int numKept = this.limit - this.position;
+        if (this.position == 0 && numKept == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+        } else {
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, numKept);
+        }
+        this.position = 0;
+        this.limit = numKept;
+        int numRead = 0;
+        while (numRead == 0) {
+            numRead = this.stream.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        }
+        if (numRead < 0) {
+            return false;
+        }
+        this.limit += numRead;
+        return true;
+    }
+
+    /**
+     * Reads the bytes of the header up to (and including) the @data keyword, so that ArffLoader can parse it.
+     * The bytes after the keyword stay in the buffer for the data section.
+     */
+    private static class HeaderScanner {
+
+        private final InputStream stream;
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        HeaderScanner(InputStream stream) {
+            this.stream = stream;
+        }
+
+        Reader readHeader() throws IOException {
+            boolean isLineStart = true;
+            while (true) {
+                if (this.position == this.limit && !read()) {
+                    break;
+                }
+                byte b = this.buffer[this.position];
+                if (b == '\n' || b == '\r') {
+                    isLineStart = true;
+                } else if (isLineStart && b == '@' && isDataKeyword()) {
+                    skipKeyword();
+                    break;
+                } else if (b < 0 || b > ' ') {
+                    isLineStart = false;
+                }
+                this.position++;
+            }
+            byte[] header = Arrays.copyOf(this.buffer, this.position);
+            return new InputStreamReader(new ByteArrayInputStream(header));
+        }
+
+        private boolean isDataKeyword() throws IOException {
+            while (this.limit - this.position < 5) {
+                if (!read()) {
+                    return false;
+                }
+            }
+            for (int i = 1; i < 5; i++) {
+                if (Character.toUpperCase((char) this.buffer[this.position + i]) != "@DATA".charAt(i)) {
+                    return false;
+                }
+            }
+            // like ArffLoader, we accept any value that starts with @data
+            return true;
+        }
+
+        private void skipKeyword() throws IOException {
+            while (true) {
+                if (this.position == this.limit && !read()) {
+                    return;
+                }
+                if (DELIMITERS[this.buffer[this.position] & 0xFF]) {
+                    return;
+                }
+                this.position++;
+            }
+        }
+
+        private boolean read() throws IOException {
+            if (this.limit == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+            }
+            int numRead = this.stream.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (numRead < 0) {
+                return false;
+            }
+            this.limit += numRead;
+            return true;
+        }
+    }
+
+    /**
+     * Open addressing hash table from the encoded labels of a nominal attribute to their index
+     */
+    private static class NominalValueTable {
+
+        private final Attribute attribute;
+        private final Charset charset;
+        private byte[][] keys;
+        private int[] indices;
+        private int size;
+
+        NominalValueTable(Attribute attribute, Charset charset) {
+            this.attribute = attribute;
+            this.charset = charset;
+            int capacity = Integer.highestOneBit(Math.max(4, 2 * attribute.numValues())) * 2;
+            this.keys = new byte[capacity][];
+            this.indices = new int[capacity];
+            for (int i = 0; i < attribute.numValues(); i++) {
+                put(attribute.value(i).getBytes(charset), attribute.indexOfValue(attribute.value(i)));
+            }
+        }
+
+        int get(byte[] bytes, int start, int end) {
+            int mask = this.keys.length - 1;
+            for (int slot = hash(bytes, start, end) & mask; this.keys[slot] != null; slot = (slot + 1) & mask) {
+                byte[] key = this.keys[slot];
+                if (key.length == end - start && rangeEquals(key, bytes, start)) {
+                    return this.indices[slot];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Resolves a label that is not in the table through the attribute, which adds unknown labels
+         */
+        int add(String label) {
+            int index = this.attribute.indexOfValue(label);
+            put(label.getBytes(this.charset), index);
+            return index;
+        }
+
+        private void put(byte[] key, int index) {
+            if (2 * (this.size + 1) > this.keys.length) {
+                byte[][] oldKeys = this.keys;
+                int[] oldIndices = this.indices;
+                this.keys = new byte[2 * oldKeys.length][];
+                this.indices = new int[2 * oldKeys.length];
+                this.size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        put(oldKeys[i], oldIndices[i]);
+                    }
+                }
+            }
+            int mask = this.keys.length - 1;
+            int slot = hash(key, 0, key.length) & mask;
+            while (this.keys[slot] != null) {
+                if (Arrays.equals(this.keys[slot], key)) {
+                    this.indices[slot] = index;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = key;
+            this.indices[slot] = index;
+            this.size++;
+        }
+
+        private static int hash(byte[] bytes, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + bytes[i];
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean rangeEquals(byte[] key, byte[] bytes, int start) {
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != bytes[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.yahoo.labs.samoa.instances;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.StringReader;
@@ -106,6 +108,20 @@ public class Instances implements Serializable {
         this.computeAttributesIndices();
     }
 
+    /**
+     * Instantiates a new instances that reads the data with a {@link FastArffLoader}.
+     *
+     * @param stream the stream
+     * @param classAttribute the class attribute
+     * @throws IOException if the header cannot be read
+     */
+    public Instances(InputStream stream, int classAttribute) throws IOException {
+        arff = new FastArffLoader(stream, classAttribute);
+        this.instanceInformation = arff.getStructure();
+        this.instances = new ArrayList<Instance>();
+        this.computeAttributesIndices();
+    }
+
     /**
      * Instantiates a new instances.
      *
@@ -484,6 +500,18 @@ public class Instances implements Serializable {
         }
     }
 
+    /**
+     * Reads the values of the next instance into the provided array without creating an instance,
+     * if the data is read by a {@link FastArffLoader} and the next instance is dense.
+     *
+     * @param values the array to write the values to, with one entry per attribute
+     * @return false if the next instance has to be read with readInstance
+     * @throws IOException if reading fails
+     */
+    public boolean readDenseInstance(double[] values) throws IOException {
+        return arff instanceof FastArffLoader && ((FastArffLoader) arff).readDenseInstance(values);
+    }
+
     /**
      * Delete.
      */
@@ -67,6 +67,19 @@ public interface Classifier extends Learner<Example<Instance>> {
      */
     public void trainOnInstance(Instance inst);
 
+    /**
+     * Trains this learner incrementally using the given batch of instances.
+     * The result must be the same as training on the instances one by one,
+     * which is what the default implementation does.
+     *
+     * @param batch the instances to be used for training, in order
+     */
+    public default void trainOnInstances(Instance[] batch) {
+        for (Instance inst : batch) {
+            trainOnInstance(inst);
+        }
+    }
+
     /**
      * Predicts the class memberships for a given instance. If an instance is
      * unclassified, the returned array elements must be all zero.
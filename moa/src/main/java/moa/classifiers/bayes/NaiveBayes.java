@@ -124,6 +124,11 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
         return false;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
     protected AttributeClassObserver newNominalClassObserver() {
         return new NominalAttributeClassObserver();
     }
@@ -23,6 +23,11 @@ import moa.core.ObjectRepository;
 import moa.tasks.TaskMonitor;
 import moa.core.Utils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import moa.classifiers.core.AttributeSplitSuggestion;
@@ -57,6 +62,65 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
     public IntOption numBinsOption = new IntOption("numBins", 'n',
             "The number of bins.", 10, 1, Integer.MAX_VALUE);
 
+    public GaussianNumericAttributeClassObserver() {
+    }
+
+    /**
+     * Copy constructor that does not rely on serialization.
+     *
+     * @param other the observer to copy
+     */
+    public GaussianNumericAttributeClassObserver(GaussianNumericAttributeClassObserver other) {
+        this.minValueObservedPerClass = new DoubleVector(other.minValueObservedPerClass);
+        this.maxValueObservedPerClass = new DoubleVector(other.maxValueObservedPerClass);
+        List<GaussianEstimator> estimators = new ArrayList<GaussianEstimator>(other.attValDistPerClass.size());
+        for (GaussianEstimator estimator : other.attValDistPerClass) {
+            estimators.add(estimator != null ? new GaussianEstimator(estimator) : null);
+        }
+        this.attValDistPerClass.addAll(estimators);
+        this.numBinsOption.setValue(other.numBinsOption.getValue());
+    }
+
+    /**
+     * Writes the observed statistics with primitive encoding, see {@link #readFrom(DataInput)}.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(this.numBinsOption.getValue());
+        this.minValueObservedPerClass.writeTo(out);
+        this.maxValueObservedPerClass.writeTo(out);
+        out.writeInt(this.attValDistPerClass.size());
+        for (GaussianEstimator estimator : this.attValDistPerClass) {
+            out.writeBoolean(estimator != null);
+            if (estimator != null) {
+                estimator.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Reads an observer written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the observer
+     * @throws IOException if reading fails
+     */
+    public static GaussianNumericAttributeClassObserver readFrom(DataInput in) throws IOException {
+        GaussianNumericAttributeClassObserver observer = new GaussianNumericAttributeClassObserver();
+        observer.numBinsOption.setValue(in.readInt());
+        observer.minValueObservedPerClass = DoubleVector.readFrom(in);
+        observer.maxValueObservedPerClass = DoubleVector.readFrom(in);
+        int numEstimators = in.readInt();
+        List<GaussianEstimator> estimators = new ArrayList<GaussianEstimator>(numEstimators);
+        for (int i = 0; i < numEstimators; i++) {
+            estimators.add(in.readBoolean() ? GaussianEstimator.readFrom(in) : null);
+        }
+        observer.attValDistPerClass.addAll(estimators);
+        return observer;
+    }
+
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
         if (Utils.isMissingValue(attVal)) {
@@ -19,6 +19,11 @@
  */
 package moa.classifiers.core.attributeclassobservers;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
 import moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
@@ -50,6 +55,62 @@ public class NominalAttributeClassObserver extends AbstractOptionHandler impleme
 
     public AutoExpandVector<DoubleVector> attValDistPerClass = new AutoExpandVector<DoubleVector>();
 
+    public NominalAttributeClassObserver() {
+    }
+
+    /**
+     * Copy constructor that does not rely on serialization.
+     *
+     * @param other the observer to copy
+     */
+    public NominalAttributeClassObserver(NominalAttributeClassObserver other) {
+        this.totalWeightObserved = other.totalWeightObserved;
+        this.missingWeightObserved = other.missingWeightObserved;
+        List<DoubleVector> valDists = new ArrayList<DoubleVector>(other.attValDistPerClass.size());
+        for (DoubleVector valDist : other.attValDistPerClass) {
+            valDists.add(valDist != null ? new DoubleVector(valDist) : null);
+        }
+        this.attValDistPerClass.addAll(valDists);
+    }
+
+    /**
+     * Writes the observed statistics with primitive encoding, see {@link #readFrom(DataInput)}.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(this.totalWeightObserved);
+        out.writeDouble(this.missingWeightObserved);
+        out.writeInt(this.attValDistPerClass.size());
+        for (DoubleVector valDist : this.attValDistPerClass) {
+            out.writeBoolean(valDist != null);
+            if (valDist != null) {
+                valDist.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Reads an observer written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the observer
+     * @throws IOException if reading fails
+     */
+    public static NominalAttributeClassObserver readFrom(DataInput in) throws IOException {
+        NominalAttributeClassObserver observer = new NominalAttributeClassObserver();
+        observer.totalWeightObserved = in.readDouble();
+        observer.missingWeightObserved = in.readDouble();
+        int numValDists = in.readInt();
+        List<DoubleVector> valDists = new ArrayList<DoubleVector>(numValDists);
+        for (int i = 0; i < numValDists; i++) {
+            valDists.add(in.readBoolean() ? DoubleVector.readFrom(in) : null);
+        }
+        observer.attValDistPerClass.addAll(valDists);
+        return observer;
+    }
+
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
         if (Utils.isMissingValue(attVal)) {
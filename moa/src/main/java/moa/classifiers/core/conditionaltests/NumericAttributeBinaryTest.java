@@ -92,4 +92,8 @@ public class NumericAttributeBinaryTest extends InstanceConditionalBinaryTest {
     public double getSplitValue() {
         return this.attValue;
     }
+
+    public boolean equalsPassesTest() {
+        return this.equalsPassesTest;
+    }
 }
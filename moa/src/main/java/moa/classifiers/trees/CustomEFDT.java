@@ -11,14 +11,24 @@ import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.classifiers.trees.plastic_util.CompiledTree;
 import moa.classifiers.trees.plastic_util.CustomEFDTNode;
 import moa.classifiers.trees.plastic_util.MeasuresNumberOfLeaves;
 import moa.classifiers.trees.plastic_util.PerformsTreeRevision;
+import moa.classifiers.trees.plastic_util.TreeSnapshotCodec;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
 import moa.options.ClassOption;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.List;
 
 public class CustomEFDT extends AbstractClassifier implements MultiClassClassifier, PerformsTreeRevision, MeasuresNumberOfLeaves {
 
@@ -32,6 +42,10 @@ public class CustomEFDT extends AbstractClassifier implements MultiClassClassifi
 
     CustomEFDTNode root;
     int seenItems = 0;
+    transient CompiledTree compiledTree;
+    // snapshot for concurrent readers, written only by the training thread
+    private transient volatile CompiledTree publishedTree;
+    private transient int publishedStructureVersion;
 
     public IntOption gracePeriodOption = new IntOption(
             "gracePeriod",
@@ -99,6 +113,18 @@ public class CustomEFDT extends AbstractClassifier implements MultiClassClassifi
     public FlagOption noPrePruneOption = new FlagOption("noPrePrune", 'p',
             "Disable pre-pruning.");
 
+    public IntOption parallelSplitEvaluationOption = new IntOption(
+            "parallelSplitEvaluation",
+            'P',
+            "Number of attributes per task when evaluating split suggestions in parallel on the common fork-join pool. 0 evaluates sequentially.",
+            0, 0, Integer.MAX_VALUE);
+
+    public FlagOption compiledInferenceOption = new FlagOption("compiledInference", 'i',
+            "Predict with a flat, array-encoded copy of the tree structure that is recompiled lazily after the tree changed.");
+
+    public FlagOption concurrentReadsOption = new FlagOption("concurrentReads", 'y',
+            "Allow other threads to call getVotesForInstance while a single thread trains. Predictions use an array-encoded snapshot of the tree structure that the training thread republishes after each structural change.");
+
     /**
      * Creates and configures the root node of the tree
      * <p>
@@ -125,7 +151,8 @@ public class CustomEFDT extends AbstractClassifier implements MultiClassClassifi
                 (NominalAttributeClassObserver) getPreparedClassOption(nominalEstimatorOption),
                 new DoubleVector(),
                 new ArrayList<>(),
-                -1
+                -1,
+                parallelSplitEvaluationOption.getValue()
         );
     }
 
@@ -136,16 +163,27 @@ public class CustomEFDT extends AbstractClassifier implements MultiClassClassifi
 
     @Override
     public double[] getVotesForInstance(Instance inst) {
+        if (concurrentReadsOption.isSet()) {
+            CompiledTree tree = publishedTree;
+            return tree == null ? new double[inst.numClasses()] : tree.predictDetached(inst);
+        }
         if (root == null) {
             root = createRoot();
             return new double[inst.numClasses()];
         }
+        if (compiledInferenceOption.isSet()) {
+            if (compiledTree == null || compiledTree.isStale())
+                compiledTree = CompiledTree.compile(root, inst.dataset());
+            return compiledTree.predict(inst);
+        }
         return root.predict(inst);
     }
 
     @Override
     public void resetLearningImpl() {
         root = null;
+        compiledTree = null;
+        publishedTree = null;
         seenItems = 0;
     }
 
@@ -159,11 +197,103 @@ public class CustomEFDT extends AbstractClassifier implements MultiClassClassifi
             root = createRoot();
         root.learnInstance(inst, seenItems);
         seenItems++;
+        publishIfChanged(inst);
+    }
+
+    /**
+     * Trains the tree on the provided batch of instances
+     * <p>
+     *     Gives the same tree as training on the instances one by one, but routes the batch down the tree once
+     *     and updates the statistics of each node for all instances that reach it in a tight loop.
+     * </p>
+     * @param batch The instances to train on, in order
+     **/
+    @Override
+    public void trainOnInstances(Instance[] batch) {
+        List<Instance> instances = new ArrayList<>(batch.length);
+        for (Instance inst : batch) {
+            if (inst.weight() > 0.0 && !inst.classIsMissing()) {
+                trainingWeightSeenByModel += inst.weight();
+                instances.add(inst);
+            }
+        }
+        if (instances.isEmpty())
+            return;
+        if (root == null)
+            root = createRoot();
+        root.learnInstances(instances, seenItems);
+        seenItems += instances.size();
+        publishIfChanged(instances.get(instances.size() - 1));
+    }
+
+    /**
+     * The tree keeps no references to the instances (the replay buffer of PLASTIC stores copies),
+     * so it can learn from streams that reuse their instances.
+     */
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
+    private void publishIfChanged(Instance inst) {
+        if (concurrentReadsOption.isSet()
+                && (publishedTree == null || root.getStructureVersion() != publishedStructureVersion)) {
+            publishedStructureVersion = root.getStructureVersion();
+            publishedTree = CompiledTree.compile(root, inst.dataset());
+        }
+    }
+
+    /**
+     * Writes a compact binary snapshot of the learner: the format version, the options and the tree
+     * (see {@link TreeSnapshotCodec}). The stream is flushed, but not closed.
+     * @param stream the stream to write to
+     * @throws IOException if writing fails
+     **/
+    public void writeSnapshot(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        TreeSnapshotCodec.writeHeader(out);
+        out.writeUTF(getClass().getName());
+        out.writeUTF(getOptions().getAsCLIString());
+        out.writeInt(seenItems);
+        out.writeDouble(trainingWeightSeenByModel);
+        out.writeBoolean(root != null);
+        if (root != null)
+            TreeSnapshotCodec.writeTree(out, root, getModelContext());
+        out.flush();
+    }
+
+    /**
+     * Restores a snapshot written by {@link #writeSnapshot(OutputStream)}, replacing the options and the model of this learner
+     * <p>
+     * The model context must be set to the header of the instances the tree learned from.
+     * The stream is read ahead, so the snapshot should be the remaining content of the stream.
+     * <p>
+     * @param stream the stream to read from
+     * @throws IOException if reading fails or if the snapshot was written by another learner or for another header
+     **/
+    public void readSnapshot(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        TreeSnapshotCodec.readHeader(in);
+        String className = in.readUTF();
+        if (!className.equals(getClass().getName()))
+            throw new IOException("The snapshot was written by " + className + ", not by " + getClass().getName());
+        getOptions().setViaCLIString(in.readUTF());
+        prepareForUse();  // applies the options and resets the model
+        int seenItems = in.readInt();
+        double trainingWeightSeenByModel = in.readDouble();
+        if (in.readBoolean())
+            root = TreeSnapshotCodec.readTree(in, createRoot(), getModelContext());
+        this.seenItems = seenItems;
+        this.trainingWeightSeenByModel = trainingWeightSeenByModel;
+        if (concurrentReadsOption.isSet() && root != null) {
+            publishedStructureVersion = root.getStructureVersion();
+            publishedTree = CompiledTree.compile(root, getModelContext());
+        }
     }
 
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return new Measurement[0];
+        return CustomEFDTNode.getTreeSizeMeasurements(root);
     }
 
     @Override
@@ -188,11 +318,11 @@ public class CustomEFDT extends AbstractClassifier implements MultiClassClassifi
      * Returns the number of leaves of the tree.
      *
      * <p>
-     *     Note that calling this function repeatedly causes some overhead
-     *     as the function traverses the tree recursively.
+     *     The nodes maintain the number of leaves in their subtree while learning,
+     *     so this does not traverse the tree.
      * </p>
      *
-     * @return the created root node
+     * @return the number of leaves
      **/
     @Override
     public int getLeafNumber() {
@@ -139,7 +139,7 @@ public class CustomHT extends AbstractClassifier implements MultiClassClassifier
 
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return new Measurement[0];
+        return CustomEFDTNode.getTreeSizeMeasurements(root);
     }
 
     @Override
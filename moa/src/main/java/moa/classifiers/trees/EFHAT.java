@@ -87,6 +87,12 @@ public class EFHAT extends AbstractClassifier implements MultiClassClassifier, P
             "Maximum allowed depth of tree.",
             20, 0, Integer.MAX_VALUE);
 
+    public IntOption predictionBufferSizeOption = new IntOption(
+            "predictionBufferSize",
+            'k',
+            "Maximum number of predictions a node keeps until it learns the predicted instance (the oldest are dropped). 0 = compute the prediction when learning, so that predicting has no side effects.",
+            EFHATNode.DEFAULT_PREDICTION_BUFFER_SIZE, 0, Integer.MAX_VALUE);
+
 //    public FlagOption noPrePruneOption = new FlagOption("noPrePrune", 'p',
 //            "Disable pre-pruning.");
 
@@ -108,7 +114,9 @@ public class EFHAT extends AbstractClassifier implements MultiClassClassifier, P
                 new DoubleVector(),
                 new ArrayList<>(),
                 -1,
-                new CustomADWINChangeDetector()
+                new CustomADWINChangeDetector(),
+                false,
+                predictionBufferSizeOption.getValue()
         );
     }
 
@@ -147,7 +155,7 @@ public class EFHAT extends AbstractClassifier implements MultiClassClassifier, P
 
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return new Measurement[0];
+        return CustomEFDTNode.getTreeSizeMeasurements(root);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package moa.classifiers.trees;
 
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
@@ -7,11 +8,15 @@ import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.classifiers.trees.plastic_util.MeasuresNumberOfLeaves;
 import moa.classifiers.trees.plastic_util.PerformsTreeRevision;
 import moa.classifiers.trees.plastic_util.PlasticNode;
+import moa.classifiers.trees.plastic_util.ProfilesRestructuring;
+import moa.classifiers.trees.plastic_util.Restructurer;
+import moa.classifiers.trees.plastic_util.RestructuringProfiler;
 import moa.core.DoubleVector;
+import moa.core.Measurement;
 
 import java.util.ArrayList;
 
-public class PLASTIC extends CustomEFDT implements PerformsTreeRevision, MeasuresNumberOfLeaves {
+public class PLASTIC extends CustomEFDT implements PerformsTreeRevision, MeasuresNumberOfLeaves, ProfilesRestructuring {
 
     public IntOption maxBranchLengthOption = new IntOption(
             "maxBranchLength",
@@ -23,6 +28,23 @@ public class PLASTIC extends CustomEFDT implements PerformsTreeRevision, Measure
             'Z', "The accepted deviation between the current numeric threshold of a node and the desired threshold. If the absolute difference is smaller, we keep the successors and simply adjust the threshold.",
             0.05, 0.0, 1_000_000.0);
 
+    public IntOption maxRestructuringNodesOption = new IntOption(
+            "maxRestructuringNodes",
+            'M',
+            "Maximum size (in nodes) of a subtree that gets restructured. Larger subtrees are replaced by a plain split. 0 = no limit.",
+            0, 0, Integer.MAX_VALUE);
+
+    public IntOption asyncRestructuringReplayBufferOption = new IntOption(
+            "asyncRestructuringReplayBuffer",
+            'A',
+            "Restructure a copy of the subtree in a background thread while the live subtree keeps learning. The value is the maximum number of instances that are buffered and replayed into the restructured subtree. 0 = restructure synchronously.",
+            0, 0, Integer.MAX_VALUE);
+
+    public FlagOption profileRestructuringOption = new FlagOption("profileRestructuring", 'r',
+            "Record the cost of each restructuring and report it in the model measurements.");
+
+    protected RestructuringProfiler restructuringProfiler;
+
     /**
      * Creates and configures the root node of the tree
      * <p>
@@ -32,6 +54,7 @@ public class PLASTIC extends CustomEFDT implements PerformsTreeRevision, Measure
      **/
     @Override
     PlasticNode createRoot() {
+        restructuringProfiler = profileRestructuringOption.isSet() ? new RestructuringProfiler() : null;
         return new PlasticNode(
                 (SplitCriterion) getPreparedClassOption(splitCriterionOption),
                 gracePeriodOption.getValue(),
@@ -52,7 +75,27 @@ public class PLASTIC extends CustomEFDT implements PerformsTreeRevision, Measure
                 new ArrayList<>(),
                 maxBranchLengthOption.getValue(),
                 0.05,
-                -1
+                -1,
+                parallelSplitEvaluationOption.getValue(),
+                new Restructurer(maxBranchLengthOption.getValue(), 0.05, maxRestructuringNodesOption.getValue(),
+                        asyncRestructuringReplayBufferOption.getValue(), restructuringProfiler)
         );
     }
+
+    @Override
+    public RestructuringProfiler getRestructuringProfiler() {
+        return restructuringProfiler;
+    }
+
+    @Override
+    protected Measurement[] getModelMeasurementsImpl() {
+        Measurement[] treeMeasurements = super.getModelMeasurementsImpl();
+        if (restructuringProfiler == null)
+            return treeMeasurements;
+        Measurement[] profilerMeasurements = restructuringProfiler.getMeasurements();
+        Measurement[] measurements = new Measurement[treeMeasurements.length + profilerMeasurements.length];
+        System.arraycopy(treeMeasurements, 0, measurements, 0, treeMeasurements.length);
+        System.arraycopy(profilerMeasurements, 0, measurements, treeMeasurements.length, profilerMeasurements.length);
+        return measurements;
+    }
 }
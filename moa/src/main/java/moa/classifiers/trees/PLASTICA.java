@@ -64,6 +64,11 @@ public class PLASTICA extends AbstractClassifier implements MultiClassClassifier
     private double confidence;
     protected boolean newClassifierReset;
 
+    // prediction of the main classifier for the instance last passed to getVotesForInstance.
+    // In test-then-train loops, training reuses it instead of routing the instance down the tree again.
+    private transient Instance lastPredictedInstance;
+    private transient int lastPredictedClass;
+
     @Override
     public void resetLearningImpl() {
         this.classifier = ((Classifier) getPreparedClassOption(this.baseLearnerOption)).copy();
@@ -72,6 +77,7 @@ public class PLASTICA extends AbstractClassifier implements MultiClassClassifier
         bgLearnerChangeDetector = new CustomADWINChangeDetector();
         this.newClassifierReset = false;
         confidence = confidenceOption.getValue();
+        lastPredictedInstance = null;
     }
 
     protected int changeDetected = 0;
@@ -82,8 +88,12 @@ public class PLASTICA extends AbstractClassifier implements MultiClassClassifier
     public void trainOnInstanceImpl(Instance inst) {
         //this.numberInstances++;
         int trueClass = (int) inst.classValue();
+        int predictedClass = inst == lastPredictedInstance
+                ? lastPredictedClass
+                : Utils.maxIndex(this.classifier.getVotesForInstance(inst));
+        lastPredictedInstance = null;
         boolean prediction;
-        if (Utils.maxIndex(this.classifier.getVotesForInstance(inst)) == trueClass) {
+        if (predictedClass == trueClass) {
             prediction = true;
         } else {
             prediction = false;
@@ -139,7 +149,10 @@ public class PLASTICA extends AbstractClassifier implements MultiClassClassifier
     }
 
     public double[] getVotesForInstance(Instance inst) {
-        return this.classifier.getVotesForInstance(inst);
+        double[] votes = this.classifier.getVotesForInstance(inst);
+        lastPredictedInstance = inst;
+        lastPredictedClass = Utils.maxIndex(votes);
+        return votes;
     }
 
     @Override
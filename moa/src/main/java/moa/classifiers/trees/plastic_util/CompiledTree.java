@@ -0,0 +1,279 @@
+package moa.classifiers.trees.plastic_util;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Array-encoded snapshot of the structure of a CustomEFDT/PLASTIC tree used for inference.
+ * <p>
+ *     Nodes are stored in pre-order. Each node has a kind, the index of its split attribute in the instance,
+ *     a split value, and an offset into a shared jump table holding the offsets of its successors.
+ *     Class votes are read from the referenced tree nodes so that they reflect the most recent leaf statistics.
+ * </p>
+ * <p>
+ *     The snapshot compares the structure version of the root (see {@link CustomEFDTNode#getStructureVersion()})
+ *     with the version at compilation once per prediction. If the tree changed since compilation
+ *     (split, pruning, restructuring, threshold adjustment), prediction falls back to the live tree
+ *     and the snapshot reports itself as stale, so the owner can recompile it lazily.
+ * </p>
+ * <p>
+ *     {@link #predictDetached(Instance)} does not access the live tree structure at all, only the class distributions
+ *     of the referenced nodes. It is safe to call from other threads while a single thread trains the tree,
+ *     provided the snapshot is published safely (e.g., through a volatile field).
+ * </p>
+ */
+public class CompiledTree {
+    private static final byte LEAF = 0;
+    private static final byte NUMERIC = 1;
+    private static final byte NOMINAL_BINARY = 2;
+    private static final byte NOMINAL_MULTIWAY = 3;
+    private static final byte SCAN = 4;  // the successor keys are ambiguous, so we scan them in the order of the live node
+    private static final byte DELEGATE = 5;  // the split attribute is not in the header, so we use the live node
+
+    private static final int NO_SUCCESSOR = -1;
+
+    private final byte[] kinds;
+    private final int[] attributeIndices;
+    private final double[] splitValues;
+    private final int[] jumpOffsets;
+    private final int[] jumpLengths;
+    private final int[] jumpTable;
+    private final SuccessorIdentifier[] scanKeys;
+
+    private final CustomEFDTNode[] nodes;
+    private final int compiledStructureVersion;
+
+    private CompiledTree(Builder builder) {
+        int n = builder.nodes.size();
+        kinds = new byte[n];
+        attributeIndices = new int[n];
+        splitValues = new double[n];
+        jumpOffsets = new int[n];
+        jumpLengths = new int[n];
+        nodes = builder.nodes.toArray(new CustomEFDTNode[n]);
+        compiledStructureVersion = nodes[0].getStructureVersion();
+        for (int i = 0; i < n; i++) {
+            kinds[i] = builder.kinds.get(i);
+            attributeIndices[i] = builder.attributeIndicesOfNodes.get(i);
+            splitValues[i] = builder.splitValues.get(i);
+            jumpOffsets[i] = builder.jumpOffsets.get(i);
+            jumpLengths[i] = builder.jumpLengths.get(i);
+        }
+        jumpTable = Arrays.copyOf(builder.jumpTable, builder.jumpTableSize);
+        scanKeys = Arrays.copyOf(builder.scanKeys, builder.jumpTableSize);
+    }
+
+    /**
+     * Compiles the tree below the provided root
+     * @param root the root of the tree
+     * @param header the header of the instances that will be predicted
+     * @return the compiled tree
+     */
+    public static CompiledTree compile(CustomEFDTNode root, Instances header) {
+        Map<String, Integer> attributeIndices = new HashMap<>();
+        for (int i = 0; i < header.numAttributes(); i++) {
+            attributeIndices.put(header.attribute(i).name(), i);
+        }
+        Builder builder = new Builder(attributeIndices);
+        builder.add(root);
+        return new CompiledTree(builder);
+    }
+
+    /**
+     * If the live tree changed since compilation. In this case, the tree should be recompiled.
+     * @return true if the compiled tree is outdated
+     */
+    public boolean isStale() {
+        return nodes[0].getStructureVersion() != compiledStructureVersion;
+    }
+
+    /**
+     * Predict the provided instance
+     * <p>
+     *     Gives the same class votes as {@link CustomEFDTNode#predict(Instance)} on the root.
+     * </p>
+     * @param instance the instance to predict
+     * @return the class votes
+     */
+    public double[] predict(Instance instance) {
+        if (isStale())
+            return nodes[0].predict(instance);
+        int i = 0;
+        while (true) {
+            if (kinds[i] == LEAF)
+                return votesOf(nodes[i]);
+            if (kinds[i] == DELEGATE)
+                return nodes[i].predict(instance);
+            int next = route(i, instance);
+            if (next == NO_SUCCESSOR)
+                return nodes[i].predict(instance);  // gives the votes the live node gives without a matching successor
+            i = next;
+        }
+    }
+
+    /**
+     * Predict the provided instance using only the snapshot
+     * <p>
+     *     Does not verify the structure against the live tree and never delegates to it.
+     *     If the snapshot has no matching successor, the votes of the last reached node are returned.
+     *     The class votes are read from the referenced nodes without synchronization, so they might be slightly outdated.
+     * </p>
+     * @param instance the instance to predict
+     * @return the class votes
+     */
+    public double[] predictDetached(Instance instance) {
+        int i = 0;
+        while (true) {
+            if (kinds[i] == LEAF || kinds[i] == DELEGATE)
+                return votesOf(nodes[i]);
+            int next = route(i, instance);
+            if (next == NO_SUCCESSOR)
+                return votesOf(nodes[i]);
+            i = next;
+        }
+    }
+
+    private int route(int i, Instance instance) {
+        int offset = jumpOffsets[i];
+        switch (kinds[i]) {
+            case NUMERIC: {
+                double value = instance.value(attributeIndices[i]);
+                if (value <= splitValues[i])
+                    return jumpTable[offset];
+                else if (value > splitValues[i])
+                    return jumpTable[offset + 1];
+                return NO_SUCCESSOR;
+            }
+            case NOMINAL_BINARY: {
+                long bits = Double.doubleToLongBits(instance.value(attributeIndices[i]));
+                return bits == Double.doubleToLongBits(splitValues[i]) ? jumpTable[offset] : jumpTable[offset + 1];
+            }
+            case NOMINAL_MULTIWAY: {
+                double value = instance.value(attributeIndices[i]);
+                int index = (int) value;
+                if (index != value || index < 0 || index >= jumpLengths[i])
+                    return NO_SUCCESSOR;
+                return jumpTable[offset + index];
+            }
+            case SCAN: {
+                Double value = instance.value(attributeIndices[i]);
+                for (int k = offset; k < offset + jumpLengths[i]; k++) {
+                    if (scanKeys[k].equals(value))
+                        return jumpTable[k];
+                }
+                return NO_SUCCESSOR;
+            }
+            default:
+                return NO_SUCCESSOR;
+        }
+    }
+
+    private static double[] votesOf(CustomEFDTNode node) {
+        // read the array once, a concurrent writer might replace it with a larger one
+        double[] counts = node.observedClassDistribution.getArrayRef();
+        return Arrays.copyOf(counts, counts.length);
+    }
+
+    /**
+     * Collects the nodes of the tree in pre-order and records their encoding
+     */
+    private static class Builder {
+        private final Map<String, Integer> attributeIndices;
+        private final List<CustomEFDTNode> nodes = new ArrayList<>();
+        private final List<Byte> kinds = new ArrayList<>();
+        private final List<Integer> attributeIndicesOfNodes = new ArrayList<>();
+        private final List<Double> splitValues = new ArrayList<>();
+        private final List<Integer> jumpOffsets = new ArrayList<>();
+        private final List<Integer> jumpLengths = new ArrayList<>();
+        private int[] jumpTable = new int[16];
+        private SuccessorIdentifier[] scanKeys = new SuccessorIdentifier[16];
+        private int jumpTableSize = 0;
+
+        Builder(Map<String, Integer> attributeIndices) {
+            this.attributeIndices = attributeIndices;
+        }
+
+        private int add(CustomEFDTNode node) {
+            int position = nodes.size();
+            nodes.add(node);
+            kinds.add(LEAF);
+            attributeIndicesOfNodes.add(-1);
+            splitValues.add(0.0);
+            jumpOffsets.add(0);
+            jumpLengths.add(0);
+            if (node.isLeaf())
+                return position;
+
+            Successors successors = node.getSuccessors();
+            Integer attributeIndex = attributeIndices.get(node.splitAttribute.name());
+            if (attributeIndex == null) {
+                kinds.set(position, DELEGATE);
+                return position;
+            }
+            attributeIndicesOfNodes.set(position, attributeIndex);
+
+            if (!successors.hasValidRoutingIndex()) {
+                kinds.set(position, SCAN);
+                List<SuccessorIdentifier> keys = new ArrayList<>(successors.getKeyset());
+                int offset = reserveJumps(position, keys.size());
+                for (int k = 0; k < keys.size(); k++) {
+                    int successor = add(successors.getSuccessorNode(keys.get(k)));
+                    jumpTable[offset + k] = successor;
+                    scanKeys[offset + k] = keys.get(k);
+                }
+            }
+            else if (!successors.isNominal()) {
+                kinds.set(position, NUMERIC);
+                int offset = reserveJumps(position, 2);
+                for (SuccessorIdentifier key : successors.getKeyset()) {
+                    splitValues.set(position, key.getSelectorValue());
+                    int successor = add(successors.getSuccessorNode(key));  // may grow the jump table
+                    jumpTable[offset + (key.isLower() ? 0 : 1)] = successor;
+                }
+            }
+            else if (successors.isBinary()) {
+                kinds.set(position, NOMINAL_BINARY);
+                int offset = reserveJumps(position, 2);
+                for (SuccessorIdentifier key : successors.getKeyset()) {
+                    boolean isDefault = key.getSelectorValue() == SuccessorIdentifier.DEFAULT_NOMINAL_VALUE;
+                    // with a valid routing index, the reference value of the default key matches the value of the other key
+                    splitValues.set(position, key.getReferencevalue());
+                    int successor = add(successors.getSuccessorNode(key));
+                    jumpTable[offset + (isDefault ? 1 : 0)] = successor;
+                }
+            }
+            else {
+                kinds.set(position, NOMINAL_MULTIWAY);
+                int length = 0;
+                for (SuccessorIdentifier key : successors.getKeyset()) {
+                    length = Math.max(length, key.getSelectorValue().intValue() + 1);
+                }
+                int offset = reserveJumps(position, length);
+                for (SuccessorIdentifier key : successors.getKeyset()) {
+                    int successor = add(successors.getSuccessorNode(key));
+                    jumpTable[offset + key.getSelectorValue().intValue()] = successor;
+                }
+            }
+            return position;
+        }
+
+        private int reserveJumps(int position, int length) {
+            int offset = jumpTableSize;
+            jumpTableSize += length;
+            if (jumpTableSize > jumpTable.length) {
+                jumpTable = Arrays.copyOf(jumpTable, Math.max(jumpTableSize, 2 * jumpTable.length));
+                scanKeys = Arrays.copyOf(scanKeys, jumpTable.length);
+            }
+            Arrays.fill(jumpTable, offset, jumpTableSize, NO_SUCCESSOR);
+            jumpOffsets.set(position, offset);
+            jumpLengths.set(position, length);
+            return offset;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package moa.classifiers.trees.plastic_util;
 
 import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
 import com.yahoo.labs.samoa.instances.Instance;
 import moa.AbstractMOAObject;
 import moa.classifiers.core.AttributeSplitSuggestion;
@@ -15,9 +16,11 @@ import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
+import moa.core.Measurement;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRevision, MeasuresNumberOfLeaves {
     protected final int gracePeriod;
@@ -50,6 +53,14 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
     protected final boolean noPrePrune;
     protected int blockedAttributeIndex;
     protected boolean performedTreeRevision = false;
+    protected final int parallelSplitEvaluationChunkSize;  // number of attributes per parallel task, 0 evaluates sequentially
+
+    // Shape of the subtree rooted at this node. Maintained incrementally while learning, only valid for inner nodes.
+    protected int subtreeLeafCount = 1;
+    protected int subtreeNodeCount = 1;
+    protected int subtreeDepth;
+    // Incremented whenever the structure of the subtree changes
+    protected int structureVersion = 0;
 
     public CustomEFDTNode(SplitCriterion splitCriterion,
                           int gracePeriod,
@@ -69,6 +80,30 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
                           DoubleVector observedClassDistribution,
                           List<Integer> usedNominalAttributes,
                           int blockedAttributeIndex) {
+        this(splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence, leafPrediction,
+                minSamplesReevaluate, depth, maxDepth, tau, tauReevaluate, relMinDeltaG, binaryOnly, noPrePrune,
+                nominalObserverBlueprint, observedClassDistribution, usedNominalAttributes, blockedAttributeIndex, 0);
+    }
+
+    public CustomEFDTNode(SplitCriterion splitCriterion,
+                          int gracePeriod,
+                          Double confidence,
+                          Double adaptiveConfidence,
+                          boolean useAdaptiveConfidence,
+                          String leafPrediction,
+                          Integer minSamplesReevaluate,
+                          Integer depth,
+                          Integer maxDepth,
+                          Double tau,
+                          Double tauReevaluate,
+                          Double relMinDeltaG,
+                          boolean binaryOnly,
+                          boolean noPrePrune,
+                          NominalAttributeClassObserver nominalObserverBlueprint,
+                          DoubleVector observedClassDistribution,
+                          List<Integer> usedNominalAttributes,
+                          int blockedAttributeIndex,
+                          int parallelSplitEvaluationChunkSize) {
         this.gracePeriod = gracePeriod;
         this.splitCriterion = splitCriterion;
         this.confidence = confidence;
@@ -89,6 +124,8 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
         this.infogainSum.put(-1, 0.0); // Initialize for null split
         classDistributionAtTimeOfCreation = new DoubleVector(this.observedClassDistribution);
         this.blockedAttributeIndex = blockedAttributeIndex;
+        this.subtreeDepth = depth;
+        this.parallelSplitEvaluationChunkSize = parallelSplitEvaluationChunkSize;
     }
 
     protected double computeHoeffdingBound() {
@@ -172,20 +209,41 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
     }
 
     public AttributeSplitSuggestion[] getBestSplitSuggestions(SplitCriterion criterion) {
-        List<AttributeSplitSuggestion> bestSuggestions = new LinkedList<>();
-        double[] preSplitDist = observedClassDistribution.getArrayCopy();
+        return getBestSplitSuggestions(criterion, observedClassDistribution.getArrayCopy());
+    }
+
+    /**
+     * Gets the best split suggestion of each attribute observer
+     * @param criterion the split criterion
+     * @param preSplitDist the class distribution before the split. Not modified, so it can be shared with other evaluations.
+     * @return the best suggestions in the order of the attributes (preceded by the null split if pre-pruning is enabled)
+     */
+    protected AttributeSplitSuggestion[] getBestSplitSuggestions(SplitCriterion criterion, double[] preSplitDist) {
+        List<AttributeSplitSuggestion> bestSuggestions = new ArrayList<>(attributeObservers.size() + 1);
         if (!noPrePrune) {
             // add null split as an option
             bestSuggestions.add(new AttributeSplitSuggestion(null,
                     new double[0][], criterion.getMeritOfSplit(
                     preSplitDist, new double[][]{preSplitDist})));
         }
-        for (int i = 0; i < attributeObservers.size(); i++) {
-            AttributeClassObserver obs = attributeObservers.get(i);
-            if (obs != null) {
-                AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(
-                        criterion, preSplitDist, i, binaryOnly
-                );
+        int numObservers = attributeObservers.size();
+        if (parallelSplitEvaluationChunkSize > 0 && numObservers > parallelSplitEvaluationChunkSize) {
+            AttributeSplitSuggestion[] suggestionsPerAttribute = new AttributeSplitSuggestion[numObservers];
+            int numChunks = (numObservers + parallelSplitEvaluationChunkSize - 1) / parallelSplitEvaluationChunkSize;
+            IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+                int end = Math.min(numObservers, (chunk + 1) * parallelSplitEvaluationChunkSize);
+                for (int i = chunk * parallelSplitEvaluationChunkSize; i < end; i++) {
+                    suggestionsPerAttribute[i] = getBestSplitSuggestion(criterion, preSplitDist, i);
+                }
+            });
+            // collect in the order of the attributes to get the same result as the sequential evaluation
+            for (AttributeSplitSuggestion suggestion : suggestionsPerAttribute) {
+                if (suggestion != null)
+                    bestSuggestions.add(suggestion);
+            }
+        } else {
+            for (int i = 0; i < numObservers; i++) {
+                AttributeSplitSuggestion bestSuggestion = getBestSplitSuggestion(criterion, preSplitDist, i);
                 if (bestSuggestion != null) {
                     bestSuggestions.add(bestSuggestion);
                 }
@@ -194,6 +252,13 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
         return bestSuggestions.toArray(new AttributeSplitSuggestion[bestSuggestions.size()]);
     }
 
+    private AttributeSplitSuggestion getBestSplitSuggestion(SplitCriterion criterion, double[] preSplitDist, int attIndex) {
+        AttributeClassObserver obs = attributeObservers.get(attIndex);
+        if (obs == null)
+            return null;
+        return obs.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex, binaryOnly);
+    }
+
     /**
      * Train on the provided instance. Re-evaluate the tree
      *
@@ -205,16 +270,62 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
         nodeTime++;
         updateStatistics(instance);
         updateObservers(instance);
+        attemptSplitOrReevaluation(instance);
+        if (!isLeaf()) {
+            propagateToSuccessors(instance, totalNumInstances);
+        }
+    }
+
+    /**
+     * Train on the provided batch of instances
+     * <p>
+     *     Gives the same tree as calling {@link #learnInstance(Instance, int)} for each instance in order.
+     *     The statistics of this node are updated for all instances up to the next split attempt or re-evaluation
+     *     in a tight loop, and the instances are then passed to the successors in one group per successor.
+     * </p>
+     *
+     * @param instances the instances to train on
+     * @param totalNumInstances the total number of instances observed before the batch
+     **/
+    public void learnInstances(List<Instance> instances, int totalNumInstances) {
+        int start = 0;
+        while (start < instances.size()) {
+            int period = isLeaf() ? gracePeriod : minSamplesReevaluate;
+            // start + period might overflow for very long periods
+            int end = start + Math.min(instances.size() - start, period - nodeTime % period);
+            for (int i = start; i < end; i++) {
+                Instance instance = instances.get(i);
+                seenWeight += instance.weight();
+                nodeTime++;
+                updateStatistics(instance);
+                updateObservers(instance);
+            }
+            // the successors must have seen the previous instances before the last one might change the structure
+            if (!isLeaf())
+                propagateToSuccessors(instances.subList(start, end - 1), totalNumInstances);
+            Instance last = instances.get(end - 1);
+            attemptSplitOrReevaluation(last);
+            if (!isLeaf())
+                propagateToSuccessors(Collections.singletonList(last), totalNumInstances);
+            start = end;
+        }
+    }
 
+    /**
+     * Attempts to split this leaf or re-evaluates the split of this node if the respective number of instances was observed
+     *
+     * @param instance the current instance
+     **/
+    private void attemptSplitOrReevaluation(Instance instance) {
+        Successors successorsBefore = successors;
+        int versionBefore = successors == null ? 0 : successors.getVersion();
         if (isLeaf() && nodeTime % gracePeriod == 0) {
             attemptInitialSplit(instance);
         }
         if (!isLeaf() && nodeTime % minSamplesReevaluate == 0) {
             reevaluateSplit(instance);
         }
-        if (!isLeaf()) {
-            propagateToSuccessors(instance, totalNumInstances);
-        }
+        updateSubtreeMetricsIfChanged(successorsBefore, versionBefore);
     }
 
     /**
@@ -245,7 +356,7 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
     CustomEFDTNode getSuccessor(Instance instance) {
         if (isLeaf())
             return null;
-        Double attVal = instance.value(splitAttribute);
+        double attVal = instance.value(splitAttribute);
         return successors.getSuccessorNode(attVal);
     }
 
@@ -291,18 +402,15 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
     protected void reevaluateSplit(Instance instance) {
         numSplitAttempts++;
 
-        AttributeSplitSuggestion[] bestSuggestions = getBestSplitSuggestions(splitCriterion);
-        Arrays.sort(bestSuggestions);
+        double[] preSplitDist = observedClassDistribution.getArrayCopy();
+        AttributeSplitSuggestion[] bestSuggestions = getBestSplitSuggestions(splitCriterion, preSplitDist);
         if (bestSuggestions.length == 0)
             return;
 
-        // get best split suggestions
-        AttributeSplitSuggestion[] bestSplitSuggestions = getBestSplitSuggestions(splitCriterion);
-        Arrays.sort(bestSplitSuggestions);
-        AttributeSplitSuggestion bestSuggestion = bestSplitSuggestions[bestSplitSuggestions.length - 1];
+        AttributeSplitSuggestion bestSuggestion = selectBestSuggestion(bestSuggestions);
 
         double bestSuggestionAverageMerit = bestSuggestion.splitTest == null ? 0.0 : bestSuggestion.merit;
-        double currentAverageMerit = getCurrentSuggestionAverageMerit(bestSuggestions);
+        double currentAverageMerit = getCurrentSuggestionAverageMerit(bestSuggestions, preSplitDist);
         double deltaG = bestSuggestionAverageMerit - currentAverageMerit;
         double eps = computeHoeffdingBound();
 
@@ -460,12 +568,113 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
      * @param totalNumInstances the number of instances seen so far
      */
     protected void propagateToSuccessors(Instance instance, int totalNumInstances) {
-        Double attValue = instance.value(splitAttribute);
+        double attValue = instance.value(splitAttribute);
         CustomEFDTNode successor = successors.getSuccessorNode(attValue);
-        if (successor == null)
+        if (successor == null) {
             successor = addSuccessor(instance);
-        if (successor != null)
+            if (successor != null) {
+                updateSubtreeMetricsFromSuccessors();
+                structureVersion++;
+            }
+        }
+        if (successor != null) {
+            int leavesBefore = successor.getLeafNumber();
+            int nodesBefore = successor.getNodeNumber();
+            int depthBefore = successor.getSubtreeDepth();
+            int structureVersionBefore = successor.structureVersion;
             successor.learnInstance(instance, totalNumInstances);
+            applySuccessorMetricsDelta(successor, leavesBefore, nodesBefore, depthBefore);
+            if (successor.structureVersion != structureVersionBefore)
+                structureVersion++;
+        }
+    }
+
+    /**
+     * Propagates the instances down the tree in one group per successor
+     * @param instances the current instances
+     * @param totalNumInstances the number of instances seen before the batch
+     */
+    protected void propagateToSuccessors(List<Instance> instances, int totalNumInstances) {
+        if (instances.isEmpty())
+            return;
+        Map<CustomEFDTNode, List<Instance>> groups = new LinkedHashMap<>();
+        for (Instance instance: instances) {
+            CustomEFDTNode successor = successors.getSuccessorNode(instance.value(splitAttribute));
+            if (successor == null) {
+                successor = addSuccessor(instance);
+                if (successor == null)
+                    continue;
+                updateSubtreeMetricsFromSuccessors();
+                structureVersion++;
+            }
+            groups.computeIfAbsent(successor, s -> new ArrayList<>()).add(instance);
+        }
+        for (Map.Entry<CustomEFDTNode, List<Instance>> group: groups.entrySet()) {
+            CustomEFDTNode successor = group.getKey();
+            int leavesBefore = successor.getLeafNumber();
+            int nodesBefore = successor.getNodeNumber();
+            int depthBefore = successor.getSubtreeDepth();
+            int structureVersionBefore = successor.structureVersion;
+            successor.learnInstances(group.getValue(), totalNumInstances);
+            applySuccessorMetricsDelta(successor, leavesBefore, nodesBefore, depthBefore);
+            if (successor.structureVersion != structureVersionBefore)
+                structureVersion++;
+        }
+    }
+
+    /**
+     * Recomputes the subtree metrics if the successors of this node changed (e.g., because of a split, pruning or restructuring).
+     * @param successorsBefore the successors before the change
+     * @param versionBefore the version of the successors before the change
+     */
+    protected void updateSubtreeMetricsIfChanged(Successors successorsBefore, int versionBefore) {
+        if (successors != successorsBefore || (successors != null && successors.getVersion() != versionBefore)) {
+            recomputeSubtreeMetrics();
+            structureVersion++;
+        }
+    }
+
+    /**
+     * Recomputes the subtree metrics of all nodes in the subtree. Only required after changes that affect the whole subtree.
+     */
+    protected void recomputeSubtreeMetrics() {
+        if (isLeaf())
+            return;
+        for (CustomEFDTNode successor: successors.getAllSuccessors()) {
+            successor.recomputeSubtreeMetrics();
+        }
+        updateSubtreeMetricsFromSuccessors();
+    }
+
+    /**
+     * Updates the subtree metrics of this node from the (valid) metrics of its direct successors
+     */
+    protected void updateSubtreeMetricsFromSuccessors() {
+        if (isLeaf())
+            return;
+        int leaves = 0;
+        int nodes = 1;
+        int maxDepth = Integer.MIN_VALUE;
+        for (CustomEFDTNode successor: successors.getAllSuccessors()) {
+            leaves += successor.getLeafNumber();
+            nodes += successor.getNodeNumber();
+            maxDepth = Math.max(maxDepth, successor.getSubtreeDepth());
+        }
+        subtreeLeafCount = leaves;
+        subtreeNodeCount = nodes;
+        subtreeDepth = maxDepth;
+    }
+
+    private void applySuccessorMetricsDelta(CustomEFDTNode successor, int leavesBefore, int nodesBefore, int depthBefore) {
+        if (isLeaf())
+            return;
+        subtreeLeafCount += successor.getLeafNumber() - leavesBefore;
+        subtreeNodeCount += successor.getNodeNumber() - nodesBefore;
+        int depthAfter = successor.getSubtreeDepth();
+        if (depthAfter > subtreeDepth)
+            subtreeDepth = depthAfter;
+        else if (depthAfter < depthBefore && depthBefore == subtreeDepth)
+            updateSubtreeMetricsFromSuccessors();
     }
 
     /**
@@ -504,19 +713,26 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
                 splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence,
                 leafPrediction, minSamplesReevaluate, depth, maxDepth,
                 tau, tauReevaluate, relMinDeltaG, binaryOnly, noPrePrune, nominalObserverBlueprint,
-                classDistribution, usedNominalAttributes, -1  // we don't block attributes in EFDT
+                classDistribution, usedNominalAttributes, -1,  // we don't block attributes in EFDT
+                parallelSplitEvaluationChunkSize
         );
     }
 
     protected void updateObservers(Instance instance) {
-        for (int i = 0; i < instance.numAttributes() - 1; i++) { //update likelihood
-            int instAttIndex = modelAttIndexToInstanceAttIndex(i, instance);
+        int numModelAttributes = instance.numAttributes() - 1;
+        int classIndex = instance.classIndex();
+        int classValue = (int) instance.classValue();
+        double weight = instance.weight();
+        // read dense values directly instead of going through the instance for every attribute
+        double[] values = instance instanceof DenseInstance ? ((DenseInstance) instance).getAttributeValuesRef() : null;
+        for (int i = 0; i < numModelAttributes; i++) { //update likelihood
+            int instAttIndex = classIndex > i ? i : i + 1;  // see modelAttIndexToInstanceAttIndex
             AttributeClassObserver obs = this.attributeObservers.get(i);
             if (obs == null) {
                 obs = instance.attribute(instAttIndex).isNominal() ? newNominalClassObserver() : newNumericClassObserver();
                 this.attributeObservers.set(i, obs);
             }
-            obs.observeAttributeClass(instance.value(instAttIndex), (int) instance.classValue(), instance.weight());
+            obs.observeAttributeClass(values != null ? values[instAttIndex] : instance.value(instAttIndex), classValue, weight);
         }
     }
 
@@ -538,12 +754,43 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
         return observedClassDistribution.numNonZeroEntries() < 2;
     }
 
+    /**
+     * Creates a new nominal observer. The blueprints never observe instances, so for the known observer classes
+     * we can create a fresh instance instead of copying the blueprint through serialization.
+     * @return a new, empty nominal observer
+     */
     protected NominalAttributeClassObserver newNominalClassObserver() {
+        if (nominalObserverBlueprint.getClass() == NominalAttributeClassObserver.class)
+            return new NominalAttributeClassObserver();
         return (NominalAttributeClassObserver) nominalObserverBlueprint.copy();
     }
 
     protected NumericAttributeClassObserver newNumericClassObserver() {
-        return (NumericAttributeClassObserver) numericObserverBlueprint.copy();
+        GaussianNumericAttributeClassObserver observer = new GaussianNumericAttributeClassObserver();
+        observer.numBinsOption.setValue(numericObserverBlueprint.numBinsOption.getValue());
+        return observer;
+    }
+
+    /**
+     * Deep copy of attribute observers without serialization for the observer types created by this node
+     * @param observers the observers to copy
+     * @return the copied observers
+     */
+    protected static AutoExpandVector<AttributeClassObserver> copyObservers(AutoExpandVector<AttributeClassObserver> observers) {
+        List<AttributeClassObserver> copies = new ArrayList<>(observers.size());
+        for (AttributeClassObserver observer : observers) {
+            if (observer == null)
+                copies.add(null);
+            else if (observer.getClass() == GaussianNumericAttributeClassObserver.class)
+                copies.add(new GaussianNumericAttributeClassObserver((GaussianNumericAttributeClassObserver) observer));
+            else if (observer.getClass() == NominalAttributeClassObserver.class)
+                copies.add(new NominalAttributeClassObserver((NominalAttributeClassObserver) observer));
+            else
+                copies.add((AttributeClassObserver) observer.copy());
+        }
+        AutoExpandVector<AttributeClassObserver> result = new AutoExpandVector<>();
+        result.addAll(copies);
+        return result;
     }
 
     protected List<Integer> getUsedNominalAttributesForSuccessor(Attribute splitAttribute, Integer splitAttributeIndex) {
@@ -605,6 +852,16 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
      * @return the merit of the current split
      */
     double getCurrentSuggestionAverageMerit(AttributeSplitSuggestion[] suggestions) {
+        return getCurrentSuggestionAverageMerit(suggestions, observedClassDistribution.getArrayCopy());
+    }
+
+    /**
+     * Get the merit if the current split
+     * @param suggestions the suggestions for the possible splits
+     * @param preSplitDist the class distribution before the split
+     * @return the merit of the current split
+     */
+    double getCurrentSuggestionAverageMerit(AttributeSplitSuggestion[] suggestions, double[] preSplitDist) {
         double merit = 0.0;
         if (splitTest != null) {
             if (splitTest instanceof NominalAttributeMultiwayTest) {
@@ -620,7 +877,7 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
             else if (splitTest instanceof NominalAttributeBinaryTest) {
                 double currentValue = successors.getReferenceValue();
                 NominalAttributeClassObserver obs = (NominalAttributeClassObserver) attributeObservers.get(getSplitAttributeIndex());
-                AttributeSplitSuggestion xCurrent = obs.forceSplit(splitCriterion, observedClassDistribution.getArrayCopy(), getSplitAttributeIndex(), true, currentValue);
+                AttributeSplitSuggestion xCurrent = obs.forceSplit(splitCriterion, preSplitDist, getSplitAttributeIndex(), true, currentValue);
                 merit = xCurrent == null ? 0.0 : xCurrent.merit;
                 if (xCurrent != null)
                     merit = xCurrent.splitTest == null ? 0.0 : xCurrent.merit;
@@ -628,7 +885,7 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
             else if (splitTest instanceof NumericAttributeBinaryTest) {
                 double currentThreshold = successors.getReferenceValue();
                 GaussianNumericAttributeClassObserver obs = (GaussianNumericAttributeClassObserver) attributeObservers.get(getSplitAttributeIndex());
-                AttributeSplitSuggestion xCurrent = obs.forceSplit(splitCriterion, observedClassDistribution.getArrayCopy(), getSplitAttributeIndex(), currentThreshold);
+                AttributeSplitSuggestion xCurrent = obs.forceSplit(splitCriterion, preSplitDist, getSplitAttributeIndex(), currentThreshold);
                 merit = xCurrent == null ? 0.0 : xCurrent.merit;
                 if (xCurrent != null)
                     merit = xCurrent.splitTest == null ? 0.0 : xCurrent.merit;
@@ -652,6 +909,21 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
         return averageMerit;
     }
 
+    /**
+     * Selects the suggestion with the highest merit without sorting.
+     * Ties are resolved in favor of the later suggestion, which gives the same result as taking the last element after sorting.
+     * @param suggestions the suggestions. Must not be empty
+     * @return the best suggestion
+     */
+    static AttributeSplitSuggestion selectBestSuggestion(AttributeSplitSuggestion[] suggestions) {
+        AttributeSplitSuggestion best = suggestions[0];
+        for (int i = 1; i < suggestions.length; i++) {
+            if (suggestions[i].compareTo(best) >= 0)
+                best = suggestions[i];
+        }
+        return best;
+    }
+
     int argmax(double[] array) {
         double max = array[0];
         int maxarg = 0;
@@ -666,14 +938,48 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
         return maxarg;
     }
 
+    /**
+     * The depth of the deepest leaf in the subtree. Does not traverse the subtree.
+     * @return the depth of the deepest leaf
+     */
     public int getSubtreeDepth() {
         if (isLeaf())
             return depth;
-        Set<Integer> succDepths = new HashSet<>();
-        for (CustomEFDTNode successor: successors.getAllSuccessors()) {
-            succDepths.add(successor.getSubtreeDepth());
-        }
-        return Collections.max(succDepths);
+        return subtreeDepth;
+    }
+
+    /**
+     * The structure version changes whenever a node of the subtree is split, pruned, restructured, or gets a new successor
+     * while learning. Statistics updates do not change it.
+     * @return the structure version of the subtree
+     */
+    public int getStructureVersion() {
+        return structureVersion;
+    }
+
+    /**
+     * The number of nodes (inner nodes and leaves) in the subtree. Does not traverse the subtree.
+     * @return the number of nodes
+     */
+    public int getNodeNumber() {
+        if (isLeaf())
+            return 1;
+        return subtreeNodeCount;
+    }
+
+    /**
+     * The size of the tree, reported under the same names as by HoeffdingTree. Does not traverse the tree.
+     * @param root the root of the tree, or null if there is no tree yet
+     * @return the number of nodes, the number of leaves and the depth of the tree
+     */
+    public static Measurement[] getTreeSizeMeasurements(CustomEFDTNode root) {
+        if (root == null)
+            return new Measurement[0];
+        return new Measurement[]{
+                new Measurement("tree size (nodes)", root.getNodeNumber()),
+                new Measurement("tree size (leaves)", root.getLeafNumber()),
+                new Measurement("tree depth", root.getSubtreeDepth())
+        };
     }
 
     /**
@@ -730,15 +1036,15 @@ public class CustomEFDTNode extends AbstractMOAObject implements PerformsTreeRev
         return didRevise;
     }
 
+    /**
+     * The number of leaves in the subtree. Does not traverse the subtree.
+     * @return the number of leaves
+     */
     @Override
     public int getLeafNumber() {
         if (isLeaf())
             return 1;
-        int sum = 0;
-        for (CustomEFDTNode s: successors.getAllSuccessors()) {
-            sum += s.getLeafNumber();
-        }
-        return sum;
+        return subtreeLeafCount;
     }
 
     @Override
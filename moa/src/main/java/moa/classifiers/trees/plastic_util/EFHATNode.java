@@ -5,6 +5,7 @@ import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserve
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.DoubleVector;
 
+import java.lang.ref.WeakReference;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -12,9 +13,19 @@ public class EFHATNode extends CustomEFDTNode {
 
     private CustomADWINChangeDetector changeDetector;  // we need to access the width of adwin to compute switch significance. This is not possible with the default adwin change detector class.
     private EFHATNode backgroundLearner;
-    private LinkedList<Double> predictions = new LinkedList<>();
     private boolean isBackgroundLearner = false;
 
+    public static final int DEFAULT_PREDICTION_BUFFER_SIZE = 100;
+
+    // Ring buffer of the predictions of this node for instances that were not learned yet.
+    // If it is full, the oldest prediction is dropped. If the size is 0, the error is computed in learnInstance.
+    // The instances are referenced weakly, so that the buffer does not keep them alive.
+    private final int predictionBufferSize;
+    private transient WeakReference<Instance>[] predictedInstances;
+    private transient double[] predictedClasses;
+    private transient int firstPrediction;
+    private transient int numPredictions;
+
     public EFHATNode(SplitCriterion splitCriterion,
                      int gracePeriod,
                      Double confidence,
@@ -32,10 +43,9 @@ public class EFHATNode extends CustomEFDTNode {
                      List<Integer> usedNominalAttributes,
                      int blockedAttributeIndex,
                      CustomADWINChangeDetector changeDetector) {
-        super(splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence, leafPrediction,
-                minSamplesReevaluate, depth, maxDepth, tau, 0.0, 0.0, binaryOnly, noPrePrune,
-                nominalObserverBlueprint, observedClassDistribution, usedNominalAttributes, blockedAttributeIndex);
-        this.changeDetector = changeDetector == null ? new CustomADWINChangeDetector() : changeDetector;
+        this(splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence, leafPrediction,
+                minSamplesReevaluate, depth, maxDepth, tau, binaryOnly, noPrePrune, nominalObserverBlueprint,
+                observedClassDistribution, usedNominalAttributes, blockedAttributeIndex, changeDetector, false);
     }
 
     public EFHATNode(SplitCriterion splitCriterion,
@@ -56,34 +66,81 @@ public class EFHATNode extends CustomEFDTNode {
                      int blockedAttributeIndex,
                      CustomADWINChangeDetector changeDetector,
                      boolean isBackgroundLearner) {
+        this(splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence, leafPrediction,
+                minSamplesReevaluate, depth, maxDepth, tau, binaryOnly, noPrePrune, nominalObserverBlueprint,
+                observedClassDistribution, usedNominalAttributes, blockedAttributeIndex, changeDetector,
+                isBackgroundLearner, DEFAULT_PREDICTION_BUFFER_SIZE);
+    }
+
+    /**
+     * @param predictionBufferSize the maximum number of predictions that are kept until the node learns the
+     *                             respective instance. If 0, the node computes its prediction when it learns
+     *                             an instance instead, so that predicting has no side effects.
+     */
+    public EFHATNode(SplitCriterion splitCriterion,
+                     int gracePeriod,
+                     Double confidence,
+                     Double adaptiveConfidence,
+                     boolean useAdaptiveConfidence,
+                     String leafPrediction,
+                     Integer minSamplesReevaluate,
+                     Integer depth,
+                     Integer maxDepth,
+                     Double tau,
+                     boolean binaryOnly,
+                     boolean noPrePrune,
+                     NominalAttributeClassObserver nominalObserverBlueprint,
+                     DoubleVector observedClassDistribution,
+                     List<Integer> usedNominalAttributes,
+                     int blockedAttributeIndex,
+                     CustomADWINChangeDetector changeDetector,
+                     boolean isBackgroundLearner,
+                     int predictionBufferSize) {
         super(splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence, leafPrediction,
                 minSamplesReevaluate, depth, maxDepth, tau, 0.0, 0.0, binaryOnly, noPrePrune,
                 nominalObserverBlueprint, observedClassDistribution, usedNominalAttributes, blockedAttributeIndex);
         this.changeDetector = changeDetector == null ? new CustomADWINChangeDetector() : changeDetector;
         this.isBackgroundLearner = isBackgroundLearner;
+        this.predictionBufferSize = predictionBufferSize;
     }
 
     @Override
     public double[] predict(Instance instance) {
         double[] pred = super.predict(instance);
+        if (predictionBufferSize == 0)
+            return pred;
         if (pred.length > 0)
-            predictions.add((double) argmax(pred));
+            addPrediction(instance, argmax(pred));
         if (backgroundLearner != null)
             backgroundLearner.predict(instance);
         return pred;
     }
 
+    /**
+     * Learns the instances one by one since the change detection needs the prediction for each instance
+     * @param instances the instances to train on
+     * @param totalNumInstances the total number of instances observed before the batch
+     */
+    @Override
+    public void learnInstances(List<Instance> instances, int totalNumInstances) {
+        for (Instance instance: instances)
+            learnInstance(instance, totalNumInstances);
+    }
+
     @Override
     public void learnInstance(Instance instance, int totalNumInstances) {
+        double prediction = predictionBufferSize == 0 ? predictFromSubtree(instance) : takePrediction(instance);
         seenWeight += instance.weight();
         nodeTime++;
         updateStatistics(instance);
         updateObservers(instance);
-        updateChangeDetector(instance.classValue());
+        updateChangeDetector(prediction, instance.classValue());
 
         if (backgroundLearner != null)
             backgroundLearner.learnInstance(instance, totalNumInstances);
 
+        Successors successorsBefore = successors;
+        int versionBefore = successors == null ? 0 : successors.getVersion();
         if (isLeaf() && nodeTime % gracePeriod == 0)
             attemptInitialSplit(instance);
 
@@ -91,6 +148,7 @@ public class EFHATNode extends CustomEFDTNode {
 //                && nodeTime % minSamplesReevaluate == 0
         )
             hatGrow();
+        updateSubtreeMetricsIfChanged(successorsBefore, versionBefore);
 
         if (!isLeaf()) //Do NOT! put this in the upper (!isleaf()) block. This is not the same since we might kill the subtree during reevaluation!
             propagateToSuccessors(instance, totalNumInstances);
@@ -137,7 +195,8 @@ public class EFHATNode extends CustomEFDTNode {
                 classDistribution, new LinkedList<>(),
                 -1,  // we don't block attributes in HT
                 (CustomADWINChangeDetector) changeDetector.copy(),
-                isBackgroundLearner
+                isBackgroundLearner,
+                predictionBufferSize
         );
     }
 
@@ -154,13 +213,66 @@ public class EFHATNode extends CustomEFDTNode {
         backgroundLearner = null;
     }
 
-    private void updateChangeDetector(double label) {
-        if (predictions.size() == 0)
+    private void updateChangeDetector(double prediction, double label) {
+        if (Double.isNaN(prediction))
             return;
-        Double pred = predictions.removeFirst();
-        if (pred == null)
-            return;
-        changeDetector.input(pred == label ? 0.0 : 1.0); // monitoring error rate, not accuracy.
+        changeDetector.input(prediction == label ? 0.0 : 1.0); // monitoring error rate, not accuracy.
+    }
+
+    /**
+     * Stores the prediction for the instance until the node learns it. Drops the oldest prediction if the buffer is full.
+     */
+    @SuppressWarnings("unchecked")
+    private void addPrediction(Instance instance, double predictedClass) {
+        if (predictedInstances == null) {
+            predictedInstances = (WeakReference<Instance>[]) new WeakReference[predictionBufferSize];
+            predictedClasses = new double[predictionBufferSize];
+        }
+        if (numPredictions == predictionBufferSize) {
+            predictedInstances[firstPrediction] = null;
+            firstPrediction = (firstPrediction + 1) % predictionBufferSize;
+            numPredictions--;
+        }
+        int position = (firstPrediction + numPredictions) % predictionBufferSize;
+        predictedInstances[position] = new WeakReference<>(instance);
+        predictedClasses[position] = predictedClass;
+        numPredictions++;
+    }
+
+    /**
+     * Removes the newest prediction for the instance from the buffer, together with all older predictions.
+     * @return the predicted class or NaN if the node did not predict the instance (e.g., because it was copied
+     * before testing or its prediction was dropped)
+     */
+    private double takePrediction(Instance instance) {
+        for (int i = numPredictions - 1; i >= 0; i--) {
+            int position = (firstPrediction + i) % predictionBufferSize;
+            if (predictedInstances[position].get() == instance) {
+                double predictedClass = predictedClasses[position];
+                for (int k = 0; k <= i; k++)
+                    predictedInstances[(firstPrediction + k) % predictionBufferSize] = null;
+                firstPrediction = (position + 1) % predictionBufferSize;
+                numPredictions -= i + 1;
+                return predictedClass;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * The prediction of this node's subtree for the instance, before learning it
+     * @return the predicted class or NaN if there are no class votes
+     */
+    private double predictFromSubtree(Instance instance) {
+        CustomEFDTNode node = this;
+        while (!node.isLeaf()) {
+            CustomEFDTNode successor = node.getSuccessor(instance);
+            if (successor == null)
+                break;
+            node = successor;
+        }
+        double[] votes = node.getClassVotes();
+        return votes.length > 0 ? argmax(votes) : Double.NaN;
     }
 
     private void resetIsBackgroundLearnerInSubtree() {
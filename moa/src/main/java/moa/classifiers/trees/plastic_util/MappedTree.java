@@ -14,14 +14,24 @@ public class MappedTree implements Iterator<PlasticBranch> {
     private final int splitAttributeIndex;
     private final Double splitValue;
     private final int maxBranchLength;
+    private final RestructuringEvent event;
 
     public MappedTree(PlasticNode root, Attribute splitAttribute, int splitAttributeIndex, Double splitValue, int maxBranchLength) {
+        this(root, splitAttribute, splitAttributeIndex, splitValue, maxBranchLength, null);
+    }
+
+    /**
+     * @param event records the forced splits and removed subtrees; may be null
+     */
+    public MappedTree(PlasticNode root, Attribute splitAttribute, int splitAttributeIndex, Double splitValue, int maxBranchLength,
+                      RestructuringEvent event) {
         branchQueue = disconnectRoot(root);
 
         this.splitAttribute = splitAttribute;
         this.splitAttributeIndex = splitAttributeIndex;
         this.splitValue = splitValue;
         this.maxBranchLength = maxBranchLength;
+        this.event = event;
     }
 
 
@@ -157,7 +167,7 @@ public class MappedTree implements Iterator<PlasticBranch> {
         boolean splitAttributesMatch = lastNode.splitAttribute == swapAttribute;
 
         if (lastNode.isLeaf() || !splitAttributesMatch) { // Option 1: the split attributes don't match
-            lastNode.forceSplit(
+            forceSplit(lastNode,
                     swapAttribute,
                     swapAttributeIndex,
                     splitValue,
@@ -187,7 +197,7 @@ public class MappedTree implements Iterator<PlasticBranch> {
             int lastNodeSplitAttributeIndex = lastNode.getSplitAttributeIndex();
             InstanceConditionalTest splitTest = lastNode.getSplitTest();
             lastNode.successors = null;
-            lastNode.forceSplit(
+            forceSplit(lastNode,
                     swapAttribute,
                     swapAttributeIndex,
                     splitValue,
@@ -207,7 +217,7 @@ public class MappedTree implements Iterator<PlasticBranch> {
             int lastNodeSplitAttributeIndex = lastNode.getSplitAttributeIndex();
             InstanceConditionalTest splitTest = lastNode.getSplitTest();
             lastNode.successors = null;
-            lastNode.forceSplit(
+            forceSplit(lastNode,
                     swapAttribute,
                     swapAttributeIndex,
                     splitValue,
@@ -237,7 +247,7 @@ public class MappedTree implements Iterator<PlasticBranch> {
             PlasticNode previousSuccessor = (PlasticNode) lastNode.getSuccessors().getSuccessorNode(keyToPreviousSuccessor);
 
             lastNode.successors = null;
-            lastNode.forceSplit(
+            forceSplit(lastNode,
                     swapAttribute,
                     swapAttributeIndex,
                     splitValue,
@@ -262,7 +272,7 @@ public class MappedTree implements Iterator<PlasticBranch> {
         boolean forceSplit = lastNode.isLeaf() || lastNode.splitAttribute != swapAttribute;
 
         if (forceSplit) {
-            lastNode.forceSplit(
+            forceSplit(lastNode,
                     swapAttribute,
                     swapAttributeIndex,
                     splitValue,
@@ -281,7 +291,7 @@ public class MappedTree implements Iterator<PlasticBranch> {
             return;
         }
 
-        lastNode.forceSplit(
+        forceSplit(lastNode,
                 swapAttribute,
                 swapAttributeIndex,
                 splitValue,
@@ -341,12 +351,27 @@ public class MappedTree implements Iterator<PlasticBranch> {
         for (SuccessorIdentifier key: keysToRemove) {
             node.getSuccessors().removeSuccessor(key);
         }
+        if (event != null)
+            event.removedSubtrees += keysToRemove.size();
 
         if (!node.isLeaf()) {
             node.getSuccessors().getAllSuccessors().forEach(s -> removeUnreachableSubtree((PlasticNode) s, splitAttributeIndex, threshold, isLower));
         }
     }
 
+    private void forceSplit(PlasticNode node, Attribute splitAttribute, int splitAttributeIndex, Double splitValue, boolean isBinary) {
+        node.forceSplit(splitAttribute, splitAttributeIndex, splitValue, isBinary);
+        if (event == null)
+            return;
+        event.forcedSplits++;
+        if (node.getSuccessors() != null) {
+            for (CustomEFDTNode successor : node.getSuccessors().getAllSuccessors()) {
+                if (((PlasticNode) successor).isDummy())
+                    event.dummyNodes++;
+            }
+        }
+    }
+
     private void modifyBranch(PlasticBranch branch, Attribute splitAttribute) {
         putLastElementToFront(branch, splitAttribute);
         resetSuccessorsInBranch(branch);
@@ -14,6 +14,8 @@ import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class PlasticNode extends CustomEFDTNode {
 
@@ -27,6 +29,13 @@ public class PlasticNode extends CustomEFDTNode {
     protected final double acceptedNumericThresholdDeviation;
     private boolean isDummy = false;
 
+    // state of an asynchronous restructuring of this node's subtree
+    private transient Future<PlasticNode> pendingRestructuring;
+    private transient Successors pendingSuccessorsBefore;
+    private transient AttributeSplitSuggestion pendingSuggestion;
+    private transient Attribute pendingSplitAttribute;
+    private transient List<Instance> replayBuffer;
+
     protected void setRestructuredFlag() {
         nodeGotRestructured = true;
     }
@@ -46,29 +55,65 @@ public class PlasticNode extends CustomEFDTNode {
             boolean noPrePrune, NominalAttributeClassObserver nominalObserverBlueprint,
             DoubleVector observedClassDistribution, List<Integer> usedNominalAttributes,
             int maxBranchLength, double acceptedNumericThresholdDeviation, int blockedAttributeIndex
+    ) {
+        this(splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence, leafPrediction,
+                minSamplesReevaluate, depth, maxDepth, tau, tauReevaluate, relMinDeltaG, binaryOnly, noPrePrune,
+                nominalObserverBlueprint, observedClassDistribution, usedNominalAttributes, maxBranchLength,
+                acceptedNumericThresholdDeviation, blockedAttributeIndex, 0);
+    }
+
+    public PlasticNode(
+            SplitCriterion splitCriterion, int gracePeriod, Double confidence, Double adaptiveConfidence,
+            boolean useAdaptiveConfidence, String leafPrediction, Integer minSamplesReevaluate, Integer depth,
+            Integer maxDepth, Double tau, Double tauReevaluate, Double relMinDeltaG, boolean binaryOnly,
+            boolean noPrePrune, NominalAttributeClassObserver nominalObserverBlueprint,
+            DoubleVector observedClassDistribution, List<Integer> usedNominalAttributes,
+            int maxBranchLength, double acceptedNumericThresholdDeviation, int blockedAttributeIndex,
+            int parallelSplitEvaluationChunkSize
+    ) {
+        this(splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence, leafPrediction,
+                minSamplesReevaluate, depth, maxDepth, tau, tauReevaluate, relMinDeltaG, binaryOnly, noPrePrune,
+                nominalObserverBlueprint, observedClassDistribution, usedNominalAttributes, maxBranchLength,
+                acceptedNumericThresholdDeviation, blockedAttributeIndex, parallelSplitEvaluationChunkSize,
+                new Restructurer(maxBranchLength, acceptedNumericThresholdDeviation));
+    }
+
+    /**
+     * Same as above, but with a restructurer that is shared with all nodes created by this node
+     * (e.g., one that reports the costs of restructuring to a listener).
+     */
+    public PlasticNode(
+            SplitCriterion splitCriterion, int gracePeriod, Double confidence, Double adaptiveConfidence,
+            boolean useAdaptiveConfidence, String leafPrediction, Integer minSamplesReevaluate, Integer depth,
+            Integer maxDepth, Double tau, Double tauReevaluate, Double relMinDeltaG, boolean binaryOnly,
+            boolean noPrePrune, NominalAttributeClassObserver nominalObserverBlueprint,
+            DoubleVector observedClassDistribution, List<Integer> usedNominalAttributes,
+            int maxBranchLength, double acceptedNumericThresholdDeviation, int blockedAttributeIndex,
+            int parallelSplitEvaluationChunkSize, Restructurer restructurer
     ) {
         super(splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence, leafPrediction,
                 minSamplesReevaluate, depth, maxDepth, tau, tauReevaluate, relMinDeltaG, binaryOnly, noPrePrune,
-                nominalObserverBlueprint, observedClassDistribution, usedNominalAttributes, blockedAttributeIndex);
+                nominalObserverBlueprint, observedClassDistribution, usedNominalAttributes, blockedAttributeIndex,
+                parallelSplitEvaluationChunkSize);
         this.maxBranchLength = maxBranchLength;
         this.acceptedNumericThresholdDeviation = acceptedNumericThresholdDeviation;
-        restructurer = new Restructurer(maxBranchLength, acceptedNumericThresholdDeviation);
+        this.restructurer = restructurer;
     }
 
     public PlasticNode(PlasticNode other) {
-        super((SplitCriterion) other.splitCriterion.copy(), other.gracePeriod, other.confidence,
+        super(other.splitCriterion, other.gracePeriod, other.confidence,
                 other.adaptiveConfidence, other.useAdaptiveConfidence, other.leafPrediction,
                 other.minSamplesReevaluate, other.depth, other.maxDepth, other.tau, other.tauReevaluate,
                 other.relMinDeltaG, other.binaryOnly, other.noPrePrune, other.nominalObserverBlueprint,
-                (DoubleVector) other.observedClassDistribution.copy(), other.usedNominalAttributes,
-                other.blockedAttributeIndex);
+                new DoubleVector(other.observedClassDistribution), other.usedNominalAttributes,
+                other.blockedAttributeIndex, other.parallelSplitEvaluationChunkSize);
         this.acceptedNumericThresholdDeviation = other.acceptedNumericThresholdDeviation;
         this.maxBranchLength = other.maxBranchLength;
         if (other.successors != null)
             this.successors = new Successors(other.successors, true);
         if (other.getSplitTest() != null)
-            setSplitTest((InstanceConditionalTest) other.getSplitTest().copy());
-        this.infogainSum = new HashMap<>(infogainSum);
+            setSplitTest(other.getSplitTest());  // split tests are immutable
+        this.infogainSum = new HashMap<>(other.infogainSum);
         this.numSplitAttempts = other.numSplitAttempts;
         this.classDistributionAtTimeOfCreation = other.classDistributionAtTimeOfCreation;
         this.nodeTime = other.nodeTime;
@@ -76,7 +121,7 @@ public class PlasticNode extends CustomEFDTNode {
         this.seenWeight = other.seenWeight;
         this.isArtificial = other.isArtificial;
         if (other.attributeObservers != null)
-            this.attributeObservers = (AutoExpandVector<AttributeClassObserver>) other.attributeObservers.copy();
+            this.attributeObservers = copyObservers(other.attributeObservers);
         restructurer = other.restructurer;
         blockedAttributeIndex = other.blockedAttributeIndex;
     }
@@ -89,6 +134,118 @@ public class PlasticNode extends CustomEFDTNode {
         return isDummy;
     }
 
+    void setIsDummy(boolean val) {
+        isDummy = val;
+    }
+
+    /**
+     * Learns the instance. If an asynchronous restructuring of the subtree is pending, its result is swapped in
+     * as soon as it is available, or once the replay buffer is full (waiting for the result if necessary).
+     * Until then, the instances are learned by the live subtree and buffered for the restructured subtree.
+     * @param instance the current instance
+     * @param totalNumInstances the number of instances seen so far
+     */
+    @Override
+    public void learnInstance(Instance instance, int totalNumInstances) {
+        if (pendingRestructuring != null
+                && (pendingRestructuring.isDone() || replayBuffer.size() >= restructurer.getReplayBufferSize()))
+            completeRestructuring(totalNumInstances);
+        if (pendingRestructuring != null)
+            replayBuffer.add(instance.copy());
+        super.learnInstance(instance, totalNumInstances);
+    }
+
+    /**
+     * Learns the batch. With asynchronous restructuring, the instances are learned one by one
+     * so that pending restructurings are completed and replayed as in {@link #learnInstance(Instance, int)}.
+     * @param instances the instances to train on
+     * @param totalNumInstances the number of instances seen before the batch
+     */
+    @Override
+    public void learnInstances(List<Instance> instances, int totalNumInstances) {
+        if (!restructurer.isAsynchronous()) {
+            super.learnInstances(instances, totalNumInstances);
+            return;
+        }
+        for (Instance instance: instances)
+            learnInstance(instance, totalNumInstances);
+    }
+
+    /**
+     * Restructures a copy of the subtree in the background. The live subtree continues learning and predicting.
+     * @param suggestion the suggestion for the best split
+     * @param splitAttribute the attribute of the best split
+     * @param splitValue the value of the best split (for binary splits)
+     * @param instance the instance that triggered the restructuring; it is replayed into the restructured subtree
+     */
+    private void startRestructuring(AttributeSplitSuggestion suggestion, Attribute splitAttribute, Double splitValue, Instance instance) {
+        PlasticNode copy = copySubtree();
+        copy.recomputeSubtreeMetrics();
+        pendingSuccessorsBefore = successors;
+        pendingSuggestion = suggestion;
+        pendingSplitAttribute = splitAttribute;
+        replayBuffer = new ArrayList<>();
+        replayBuffer.add(instance.copy());
+        pendingRestructuring = restructurer.restructureAsync(copy, suggestion, splitAttribute, splitValue);
+    }
+
+    /**
+     * Swaps in the result of the pending restructuring and replays the buffered instances into the new subtree.
+     * If the live node was restructured by an ancestor in the meantime, the result is discarded.
+     */
+    private void completeRestructuring(int totalNumInstances) {
+        PlasticNode restructured;
+        try {
+            restructured = pendingRestructuring.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            restructured = null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Restructuring failed", e.getCause());
+        }
+        List<Instance> instancesToReplay = replayBuffer;
+        boolean isCurrent = successors == pendingSuccessorsBefore;
+        AttributeSplitSuggestion suggestion = pendingSuggestion;
+        Attribute splitAttribute = pendingSplitAttribute;
+        pendingRestructuring = null;
+        pendingSuccessorsBefore = null;
+        pendingSuggestion = null;
+        pendingSplitAttribute = null;
+        replayBuffer = null;
+        if (!isCurrent)
+            return;
+
+        if (restructured != null) {
+            successors = restructured.getSuccessors();
+            setSplitAttribute(suggestion, splitAttribute);
+        }
+        else {
+            makeSplit(splitAttribute, suggestion);
+        }
+        recomputeSubtreeMetrics();
+        structureVersion++;
+        for (Instance instance : instancesToReplay) {
+            if (!isLeaf())
+                propagateToSuccessors(instance, totalNumInstances);
+        }
+    }
+
+    /**
+     * Copies this node and all nodes of its subtree
+     * @return the root of the copied subtree
+     */
+    protected PlasticNode copySubtree() {
+        PlasticNode copy = new PlasticNode(this);
+        copy.nodeGotRestructured = nodeGotRestructured;
+        if (copy.successors != null) {
+            for (SuccessorIdentifier key : new ArrayList<>(successors.getKeyset())) {
+                PlasticNode successor = (PlasticNode) successors.getSuccessorNode(key);
+                copy.successors.forceSuccessorForKey(key, successor.copySubtree());
+            }
+        }
+        return copy;
+    }
+
     @Override
     protected PlasticNode addSuccessor(Instance instance) {
         List<Integer> usedNomAttributes = new ArrayList<>(usedNominalAttributes); //deep copy
@@ -123,7 +280,8 @@ public class PlasticNode extends CustomEFDTNode {
                 splitCriterion, gracePeriod, confidence, adaptiveConfidence, useAdaptiveConfidence,
                 leafPrediction, minSamplesReevaluate, depth, maxDepth,
                 tau, tauReevaluate, relMinDeltaG, binaryOnly, noPrePrune, nominalObserverBlueprint,
-                classDistribution, usedNominalAttributes, maxBranchLength, acceptedNumericThresholdDeviation, getSplitAttributeIndex()
+                classDistribution, usedNominalAttributes, maxBranchLength, acceptedNumericThresholdDeviation, getSplitAttributeIndex(),
+                parallelSplitEvaluationChunkSize, restructurer
         );
     }
 
@@ -293,23 +451,22 @@ public class PlasticNode extends CustomEFDTNode {
      */
     @Override
     protected void reevaluateSplit(Instance instance) {
-        if (isPure())
+        if (isPure() || pendingRestructuring != null)
             return;
 
         numSplitAttempts++;
 
-        AttributeSplitSuggestion[] bestSuggestions = getBestSplitSuggestions(splitCriterion);
-        Arrays.sort(bestSuggestions);
+        // evaluate the observers only once and share the result for the infogain sums, the best and the current split
+        double[] preSplitDist = observedClassDistribution.getArrayCopy();
+        AttributeSplitSuggestion[] bestSuggestions = getBestSplitSuggestions(splitCriterion, preSplitDist);
         if (bestSuggestions.length == 0)
             return;
         updateInfogainSum(bestSuggestions);
 
-        AttributeSplitSuggestion[] bestSplitSuggestions = getBestSplitSuggestions(splitCriterion);
-        Arrays.sort(bestSplitSuggestions);
-        AttributeSplitSuggestion bestSuggestion = bestSplitSuggestions[bestSplitSuggestions.length - 1];
+        AttributeSplitSuggestion bestSuggestion = selectBestSuggestion(bestSuggestions);
 
         double bestSuggestionAverageMerit = bestSuggestion.splitTest == null ? 0.0 : bestSuggestion.merit;
-        double currentAverageMerit = getCurrentSuggestionAverageMerit(bestSuggestions);
+        double currentAverageMerit = getCurrentSuggestionAverageMerit(bestSuggestions, preSplitDist);
         double deltaG = bestSuggestionAverageMerit - currentAverageMerit;
         double eps = computeHoeffdingBound();
 
@@ -325,6 +482,13 @@ public class PlasticNode extends CustomEFDTNode {
             Attribute newSplitAttribute = instance.attribute(bestSuggestion.splitTest.getAttsTestDependsOn()[0]);
             boolean success = false;
             performedTreeRevision = true;
+            // a subtree over the budget is not copied, the restructurer falls back to a plain split right away
+            if (maxBranchLength > 1 && restructurer.isAsynchronous() && !restructurer.isOverBudget(this)) {
+                startRestructuring(bestSuggestion, newSplitAttribute, getSplitValue(bestSuggestion), instance);
+                nodeTime = 0;
+                seenWeight = 0.0;
+                return;
+            }
             if (maxBranchLength > 1) {
                 success = performReordering(bestSuggestion, newSplitAttribute);
                 if (success)
@@ -345,14 +509,7 @@ public class PlasticNode extends CustomEFDTNode {
      * @return true if restructuring was successful
      */
     private boolean performReordering(AttributeSplitSuggestion xBest, Attribute splitAttribute) {
-        Double splitValue = null;
-        InstanceConditionalTest test = xBest.splitTest;
-        if (test instanceof NominalAttributeBinaryTest)
-            splitValue = ((NominalAttributeBinaryTest) test).getValue();
-        else if (test instanceof NumericAttributeBinaryTest)
-            splitValue = ((NumericAttributeBinaryTest) test).getValue();
-
-        PlasticNode restructuredNode = restructurer.restructure(this, xBest, splitAttribute, splitValue);
+        PlasticNode restructuredNode = restructurer.restructure(this, xBest, splitAttribute, getSplitValue(xBest));
 
         if (restructuredNode != null)
             successors = restructuredNode.getSuccessors();
@@ -360,6 +517,15 @@ public class PlasticNode extends CustomEFDTNode {
         return restructuredNode != null;
     }
 
+    private static Double getSplitValue(AttributeSplitSuggestion suggestion) {
+        InstanceConditionalTest test = suggestion.splitTest;
+        if (test instanceof NominalAttributeBinaryTest)
+            return ((NominalAttributeBinaryTest) test).getValue();
+        else if (test instanceof NumericAttributeBinaryTest)
+            return ((NumericAttributeBinaryTest) test).getValue();
+        return null;
+    }
+
     protected void updateUsedNominalAttributesInSubtree(Attribute splitAttribute, Integer splitAttributeIndex) {
         if (isLeaf())
             return;
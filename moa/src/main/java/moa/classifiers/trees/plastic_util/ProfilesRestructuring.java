@@ -0,0 +1,8 @@
+package moa.classifiers.trees.plastic_util;
+
+public interface ProfilesRestructuring {
+    /**
+     * @return the profiler of the restructuring costs or null if profiling is disabled
+     */
+    RestructuringProfiler getRestructuringProfiler();
+}
@@ -8,46 +8,142 @@ import moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
 import moa.core.DoubleVector;
 
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class Restructurer extends AbstractMOAObject {
     private final int maxBranchLength;
     private final double acceptedThresholdDeviation;
+    private final int maxRestructuringNodes;
+    private final int replayBufferSize;
+    private final RestructuringListener listener;
+    private transient ThreadPoolExecutor executor;
 
     public Restructurer(int maxBranchLength,
                         double acceptedNumericThresholdDeviation) {
+        this(maxBranchLength, acceptedNumericThresholdDeviation, null);
+    }
+
+    /**
+     * @param maxBranchLength the maximum length of branches during restructuring
+     * @param acceptedNumericThresholdDeviation the deviation up to which numeric thresholds are adjusted in place
+     * @param listener receives the cost of each restructuring; no costs are recorded if null
+     */
+    public Restructurer(int maxBranchLength,
+                        double acceptedNumericThresholdDeviation,
+                        RestructuringListener listener) {
+        this(maxBranchLength, acceptedNumericThresholdDeviation, 0, listener);
+    }
+
+    /**
+     * @param maxBranchLength the maximum length of branches during restructuring
+     * @param acceptedNumericThresholdDeviation the deviation up to which numeric thresholds are adjusted in place
+     * @param maxRestructuringNodes the maximum size of a subtree that gets reordered (0 = no limit).
+     *                              Larger subtrees are rejected so that the caller falls back to a plain split.
+     * @param listener receives the cost of each restructuring; no costs are recorded if null
+     */
+    public Restructurer(int maxBranchLength,
+                        double acceptedNumericThresholdDeviation,
+                        int maxRestructuringNodes,
+                        RestructuringListener listener) {
+        this(maxBranchLength, acceptedNumericThresholdDeviation, maxRestructuringNodes, 0, listener);
+    }
+
+    /**
+     * @param maxBranchLength the maximum length of branches during restructuring
+     * @param acceptedNumericThresholdDeviation the deviation up to which numeric thresholds are adjusted in place
+     * @param maxRestructuringNodes the maximum size of a subtree that gets reordered (0 = no limit)
+     * @param replayBufferSize if larger than 0, nodes restructure a copy of their subtree in a background thread
+     *                         and replay up to this many instances into the result. See {@link PlasticNode}.
+     * @param listener receives the cost of each restructuring; no costs are recorded if null
+     */
+    public Restructurer(int maxBranchLength,
+                        double acceptedNumericThresholdDeviation,
+                        int maxRestructuringNodes,
+                        int replayBufferSize,
+                        RestructuringListener listener) {
         this.maxBranchLength = maxBranchLength;
         acceptedThresholdDeviation = acceptedNumericThresholdDeviation;
+        this.maxRestructuringNodes = maxRestructuringNodes;
+        this.replayBufferSize = replayBufferSize;
+        this.listener = listener;
+    }
+
+    public boolean isAsynchronous() {
+        return replayBufferSize > 0;
+    }
+
+    public int getReplayBufferSize() {
+        return replayBufferSize;
+    }
+
+    /**
+     * Restructures the provided node in a background thread.
+     * The node and its subtree must not be accessed by other threads until the result is available.
+     * @return the result of {@link #restructure} on the background thread
+     */
+    public synchronized Future<PlasticNode> restructureAsync(PlasticNode node, AttributeSplitSuggestion suggestion, Attribute splitAttribute, Double splitValue) {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "PLASTIC restructuring");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor.submit(() -> restructure(node, suggestion, splitAttribute, splitValue));
+    }
+
+    /**
+     * @param node the root of the subtree
+     * @return true if the subtree exceeds the restructuring budget, so that restructuring it falls back to a plain split
+     */
+    public boolean isOverBudget(PlasticNode node) {
+        return maxRestructuringNodes > 0 && node.getNodeNumber() > maxRestructuringNodes;
     }
 
     public PlasticNode restructure(PlasticNode node, AttributeSplitSuggestion suggestion, Attribute splitAttribute, Double splitValue) {
+        RestructuringEvent event = listener == null ? null : new RestructuringEvent(node);
         boolean isBinary = !(suggestion.splitTest instanceof NominalAttributeMultiwayTest);
         int splitAttributeIndex = suggestion.splitTest.getAttsTestDependsOn()[0];
 
         boolean checkSucceeds = checkPreconditions(node, splitAttribute, splitValue, isBinary);
 
         if (!checkSucceeds)
-            return null;
+            return report(event, RestructuringEvent.Kind.REJECTED, null);
 
         if (splitAttribute == node.splitAttribute && isBinary) {
             assert splitValue != null;
             Double currentNominalBinarysplitValue = node.getSuccessors().getReferenceValue();
             if (currentNominalBinarysplitValue.equals(splitValue))
-                return node;
+                return report(event, RestructuringEvent.Kind.UNCHANGED, node);
         }
 
-        if (node.splitAttribute.isNumeric() && splitAttribute.isNumeric()) {
+        boolean isThresholdUpdate = node.splitAttribute.isNumeric() && node.splitAttribute == splitAttribute;
+        if (isThresholdUpdate) {
             assert splitValue != null;
-            Double currentSplitValue = node.getSuccessors().getReferenceValue();
-            if (node.splitAttribute == splitAttribute) {
-                if (!currentSplitValue.equals(splitValue))
-                    updateThreshold(node, splitAttributeIndex, splitValue);
-                return node;
-            }
+            if (node.getSuccessors().getReferenceValue().equals(splitValue))
+                return report(event, RestructuringEvent.Kind.UNCHANGED, node);
+        }
+
+        // before any work that is proportional to the size of the subtree
+        if (isOverBudget(node))
+            return report(event, RestructuringEvent.Kind.OVER_BUDGET, null);
+
+        if (isThresholdUpdate) {
+            updateThreshold(node, splitAttributeIndex, splitValue, event);
+            return report(event, RestructuringEvent.Kind.THRESHOLD_UPDATE, node);
         }
 
 //        node.collectChildrenSplitAttributes();
-        MappedTree mappedTree = new MappedTree(node, splitAttribute, splitAttributeIndex, splitValue, maxBranchLength);
-        PlasticNode newRoot = reassembleTree(mappedTree);
+        if (event != null)
+            event.startPhase();
+        MappedTree mappedTree = new MappedTree(node, splitAttribute, splitAttributeIndex, splitValue, maxBranchLength, event);
+        PlasticNode newRoot = reassembleTree(mappedTree, event);
+        if (event != null)
+            event.finishMappingPhase();
 
         newRoot.setSplitAttribute(suggestion, splitAttribute);
         newRoot.updateUsedNominalAttributesInSubtree(splitAttribute, splitAttributeIndex);
@@ -87,9 +183,21 @@ public class Restructurer extends AbstractMOAObject {
                 }
             }
         }
+        if (event != null)
+            event.finishCleanupPhase();
 
         finalProcessing(node);
-        return newRoot;
+        if (event != null)
+            event.finishFinalProcessingPhase();
+        return report(event, RestructuringEvent.Kind.REORDERING, newRoot);
+    }
+
+    private PlasticNode report(RestructuringEvent event, RestructuringEvent.Kind kind, PlasticNode result) {
+        if (event != null) {
+            event.finish(kind);
+            listener.onRestructuring(event);
+        }
+        return result;
     }
 
     private boolean checkPreconditions(PlasticNode node, Attribute splitAttribute, Double splitValue, boolean isBinary) {
@@ -112,7 +220,7 @@ public class Restructurer extends AbstractMOAObject {
         return true;
     }
 
-    private void updateThreshold(PlasticNode node, int splitAttributeIndex, double splitValue) {
+    private void updateThreshold(PlasticNode node, int splitAttributeIndex, double splitValue, RestructuringEvent event) {
         Double oldThreshold = node.getSuccessors().getReferenceValue();
 
         SuccessorIdentifier leftKey = new SuccessorIdentifier(true, oldThreshold, oldThreshold, true);
@@ -131,7 +239,7 @@ public class Restructurer extends AbstractMOAObject {
 
         for (SuccessorIdentifier key: node.getSuccessors().getKeyset()) {
             PlasticNode s = (PlasticNode) node.getSuccessors().getSuccessorNode(key);
-            removeUnreachableSubtree(s, splitAttributeIndex, splitValue, key.isLower());
+            removeUnreachableSubtree(s, splitAttributeIndex, splitValue, key.isLower(), event);
         }
 
         if (Math.abs(splitValue - oldThreshold) > acceptedThresholdDeviation) {
@@ -172,7 +280,7 @@ public class Restructurer extends AbstractMOAObject {
         return root;
     }
 
-    private PlasticNode reassembleTree(MappedTree mappedTree) {
+    private PlasticNode reassembleTree(MappedTree mappedTree, RestructuringEvent event) {
         if (!mappedTree.hasNext()) {
             System.out.println("MappedTree is empty");
         }
@@ -180,6 +288,8 @@ public class Restructurer extends AbstractMOAObject {
         PlasticNode root = null;
         while (mappedTree.hasNext()) {
             PlasticBranch branch = mappedTree.next();
+            if (event != null)
+                event.mappedBranches++;
             if (root == null)
                 root = branch.getBranchRef().getFirst().getNode();
 
@@ -275,13 +385,13 @@ public class Restructurer extends AbstractMOAObject {
         }
     }
 
-    private void removeUnreachableSubtree(PlasticNode node, int splitAttributeIndex, double threshold, boolean isLower) {
+    private void removeUnreachableSubtree(PlasticNode node, int splitAttributeIndex, double threshold, boolean isLower, RestructuringEvent event) {
         if (node.isLeaf())
             return;
 
         if (node.getSplitAttributeIndex() != splitAttributeIndex) {
             for (CustomEFDTNode successor: node.getSuccessors().getAllSuccessors()) {
-                removeUnreachableSubtree((PlasticNode) successor, splitAttributeIndex, threshold, isLower);
+                removeUnreachableSubtree((PlasticNode) successor, splitAttributeIndex, threshold, isLower, event);
             }
             return;
         }
@@ -303,9 +413,11 @@ public class Restructurer extends AbstractMOAObject {
         for (SuccessorIdentifier key: keysToRemove) {
             node.getSuccessors().removeSuccessor(key);
         }
+        if (event != null)
+            event.removedSubtrees += keysToRemove.size();
 
         if (!node.isLeaf()) {
-            node.getSuccessors().getAllSuccessors().forEach(s -> removeUnreachableSubtree((PlasticNode) s, splitAttributeIndex, threshold, isLower));
+            node.getSuccessors().getAllSuccessors().forEach(s -> removeUnreachableSubtree((PlasticNode) s, splitAttributeIndex, threshold, isLower, event));
         }
     }
 
@@ -0,0 +1,182 @@
+package moa.classifiers.trees.plastic_util;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Cost of a single call of {@link Restructurer#restructure}.
+ * <p>
+ *     Durations are wall-clock nanoseconds. The allocated bytes (in total and per phase) are -1 if the JVM
+ *     cannot measure allocations of the current thread.
+ * </p>
+ */
+public class RestructuringEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        /** the preconditions failed, the caller falls back to a plain split */
+        REJECTED,
+        /** the subtree exceeds the restructuring budget, the caller falls back to a plain split */
+        OVER_BUDGET,
+        /** the node already had the desired split */
+        UNCHANGED,
+        /** the numeric threshold of the node was adjusted */
+        THRESHOLD_UPDATE,
+        /** the subtree was reordered */
+        REORDERING
+    }
+
+    Kind kind = Kind.REJECTED;
+    int depth;
+    int subtreeNodesBefore;
+    int mappedBranches;
+    int forcedSplits;
+    int dummyNodes;
+    int removedSubtrees;
+    long mappingNanos;
+    long cleanupNanos;
+    long finalProcessingNanos;
+    long totalNanos;
+    long mappingAllocatedBytes;
+    long cleanupAllocatedBytes;
+    long finalProcessingAllocatedBytes;
+    long allocatedBytes;
+
+    private final transient long startNanos;
+    private final transient long startAllocatedBytes;
+    private transient long phaseStartNanos;
+    private transient long phaseStartAllocatedBytes;
+
+    RestructuringEvent(PlasticNode node) {
+        depth = node.getDepth();
+        subtreeNodesBefore = node.getNodeNumber();
+        startAllocatedBytes = currentThreadAllocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    void finish(Kind kind) {
+        this.kind = kind;
+        totalNanos = System.nanoTime() - startNanos;
+        allocatedBytes = allocatedSince(startAllocatedBytes);
+    }
+
+    /**
+     * Starts measuring the next restructuring phase
+     */
+    void startPhase() {
+        phaseStartAllocatedBytes = currentThreadAllocatedBytes();
+        phaseStartNanos = System.nanoTime();
+    }
+
+    void finishMappingPhase() {
+        mappingNanos = System.nanoTime() - phaseStartNanos;
+        mappingAllocatedBytes = allocatedSince(phaseStartAllocatedBytes);
+        startPhase();
+    }
+
+    void finishCleanupPhase() {
+        cleanupNanos = System.nanoTime() - phaseStartNanos;
+        cleanupAllocatedBytes = allocatedSince(phaseStartAllocatedBytes);
+        startPhase();
+    }
+
+    void finishFinalProcessingPhase() {
+        finalProcessingNanos = System.nanoTime() - phaseStartNanos;
+        finalProcessingAllocatedBytes = allocatedSince(phaseStartAllocatedBytes);
+    }
+
+    private static long allocatedSince(long startAllocatedBytes) {
+        long allocated = currentThreadAllocatedBytes();
+        return allocated < 0 || startAllocatedBytes < 0 ? -1 : allocated - startAllocatedBytes;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getSubtreeNodesBefore() {
+        return subtreeNodesBefore;
+    }
+
+    public int getMappedBranches() {
+        return mappedBranches;
+    }
+
+    public int getForcedSplits() {
+        return forcedSplits;
+    }
+
+    public int getDummyNodes() {
+        return dummyNodes;
+    }
+
+    public int getRemovedSubtrees() {
+        return removedSubtrees;
+    }
+
+    public long getMappingNanos() {
+        return mappingNanos;
+    }
+
+    public long getCleanupNanos() {
+        return cleanupNanos;
+    }
+
+    public long getFinalProcessingNanos() {
+        return finalProcessingNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMappingAllocatedBytes() {
+        return mappingAllocatedBytes;
+    }
+
+    public long getCleanupAllocatedBytes() {
+        return cleanupAllocatedBytes;
+    }
+
+    public long getFinalProcessingAllocatedBytes() {
+        return finalProcessingAllocatedBytes;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public static String csvHeader() {
+        return "kind,depth,subtree nodes before,mapped branches,forced splits,dummy nodes,removed subtrees,"
+                + "mapping (ns),cleanup (ns),final processing (ns),total (ns),"
+                + "mapping allocated bytes,cleanup allocated bytes,final processing allocated bytes,allocated bytes";
+    }
+
+    public String toCSV() {
+        return kind + "," + depth + "," + subtreeNodesBefore + "," + mappedBranches + "," + forcedSplits + ","
+                + dummyNodes + "," + removedSubtrees + "," + mappingNanos + "," + cleanupNanos + ","
+                + finalProcessingNanos + "," + totalNanos + "," + mappingAllocatedBytes + ","
+                + cleanupAllocatedBytes + "," + finalProcessingAllocatedBytes + "," + allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return toCSV();
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
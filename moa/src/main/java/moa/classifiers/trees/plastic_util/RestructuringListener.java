@@ -0,0 +1,11 @@
+package moa.classifiers.trees.plastic_util;
+
+import java.io.Serializable;
+
+/**
+ * Receives a {@link RestructuringEvent} after each call of {@link Restructurer#restructure}.
+ * The restructurer only records events if a listener is attached.
+ */
+public interface RestructuringListener extends Serializable {
+    void onRestructuring(RestructuringEvent event);
+}
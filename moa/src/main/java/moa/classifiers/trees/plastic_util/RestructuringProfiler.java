@@ -0,0 +1,135 @@
+package moa.classifiers.trees.plastic_util;
+
+import moa.core.Measurement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates the costs of restructuring into counters and a histogram of durations.
+ * <p>
+ *     The durations are counted in buckets of powers of two nanoseconds, so percentiles are upper bounds
+ *     that are at most a factor of two off.
+ *     If event logging is enabled, the events are kept until they are drained with {@link #drainEvents()}.
+ *     The profiler is thread-safe, since asynchronous restructuring reports events from a background thread.
+ * </p>
+ */
+public class RestructuringProfiler implements RestructuringListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] kindCounts = new long[RestructuringEvent.Kind.values().length];
+    private final long[] durationHistogram = new long[Long.SIZE];
+    private long mappedBranches = 0;
+    private long forcedSplits = 0;
+    private long dummyNodes = 0;
+    private long removedSubtrees = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+    private long mappingAllocatedBytes = 0;
+    private long cleanupAllocatedBytes = 0;
+    private long finalProcessingAllocatedBytes = 0;
+    private long allocatedBytes = 0;
+
+    private boolean logEvents = false;
+    private List<RestructuringEvent> events = new ArrayList<>();
+
+    @Override
+    public synchronized void onRestructuring(RestructuringEvent event) {
+        kindCounts[event.getKind().ordinal()]++;
+        durationHistogram[bucketOf(event.getTotalNanos())]++;
+        mappedBranches += event.getMappedBranches();
+        forcedSplits += event.getForcedSplits();
+        dummyNodes += event.getDummyNodes();
+        removedSubtrees += event.getRemovedSubtrees();
+        totalNanos += event.getTotalNanos();
+        maxNanos = Math.max(maxNanos, event.getTotalNanos());
+        if (event.getMappingAllocatedBytes() > 0)
+            mappingAllocatedBytes += event.getMappingAllocatedBytes();
+        if (event.getCleanupAllocatedBytes() > 0)
+            cleanupAllocatedBytes += event.getCleanupAllocatedBytes();
+        if (event.getFinalProcessingAllocatedBytes() > 0)
+            finalProcessingAllocatedBytes += event.getFinalProcessingAllocatedBytes();
+        if (event.getAllocatedBytes() > 0)
+            allocatedBytes += event.getAllocatedBytes();
+        if (logEvents)
+            events.add(event);
+    }
+
+    /**
+     * Keep the events for {@link #drainEvents()}
+     * @param logEvents if events should be kept
+     */
+    public synchronized void setLogEvents(boolean logEvents) {
+        this.logEvents = logEvents;
+        if (!logEvents)
+            events.clear();
+    }
+
+    /**
+     * Returns the events recorded since the last call and clears the log
+     * @return the logged events in order of occurrence
+     */
+    public synchronized List<RestructuringEvent> drainEvents() {
+        if (events.isEmpty())
+            return events;
+        List<RestructuringEvent> drained = events;
+        events = new ArrayList<>();
+        return drained;
+    }
+
+    public synchronized long getNumRestructurings() {
+        long sum = 0;
+        for (long count : kindCounts)
+            sum += count;
+        return sum;
+    }
+
+    public synchronized long getNumRestructurings(RestructuringEvent.Kind kind) {
+        return kindCounts[kind.ordinal()];
+    }
+
+    /**
+     * Upper bound of the given percentile of the restructuring durations
+     * @param percentile the percentile in [0, 100]
+     * @return the upper bound in nanoseconds
+     */
+    public synchronized long getDurationPercentileNanos(double percentile) {
+        long total = getNumRestructurings();
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < durationHistogram.length; i++) {
+            seen += durationHistogram[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(maxNanos, i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1);
+        }
+        return maxNanos;
+    }
+
+    public synchronized Measurement[] getMeasurements() {
+        return new Measurement[]{
+                new Measurement("restructurings", getNumRestructurings()),
+                new Measurement("restructurings (reordering)", getNumRestructurings(RestructuringEvent.Kind.REORDERING)),
+                new Measurement("restructurings (threshold update)", getNumRestructurings(RestructuringEvent.Kind.THRESHOLD_UPDATE)),
+                new Measurement("restructurings (over budget)", getNumRestructurings(RestructuringEvent.Kind.OVER_BUDGET)),
+                new Measurement("restructuring mapped branches", mappedBranches),
+                new Measurement("restructuring forced splits", forcedSplits),
+                new Measurement("restructuring dummy nodes", dummyNodes),
+                new Measurement("restructuring removed subtrees", removedSubtrees),
+                new Measurement("restructuring time (ms)", totalNanos / 1e6),
+                new Measurement("restructuring p50 time (ms)", getDurationPercentileNanos(50) / 1e6),
+                new Measurement("restructuring p99 time (ms)", getDurationPercentileNanos(99) / 1e6),
+                new Measurement("restructuring max time (ms)", maxNanos / 1e6),
+                new Measurement("restructuring mapping allocated (MB)", mappingAllocatedBytes / (1024.0 * 1024.0)),
+                new Measurement("restructuring cleanup allocated (MB)", cleanupAllocatedBytes / (1024.0 * 1024.0)),
+                new Measurement("restructuring final processing allocated (MB)", finalProcessingAllocatedBytes / (1024.0 * 1024.0)),
+                new Measurement("restructuring allocated (MB)", allocatedBytes / (1024.0 * 1024.0))
+        };
+    }
+
+    private static int bucketOf(long nanos) {
+        return nanos <= 0 ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    }
+}
@@ -5,9 +5,26 @@ import moa.AbstractMOAObject;
 import java.util.*;
 
 public class Successors extends AbstractMOAObject {
+    private static final int MAX_MULTIWAY_ROUTES = 1 << 16;
+
     private Double referenceValue;
     private HashMap<SuccessorIdentifier, CustomEFDTNode> successors = new HashMap<>();
 
+    // Routing index that mirrors `successors` so that routing an attribute value does not need to scan the keyset.
+    // It is rebuilt whenever the successors change. If the keys do not have the expected shape
+    // (e.g., intermediate states during restructuring), `routingIndexValid` is false and we fall back to scanning.
+    private boolean routingIndexValid = true;
+    private CustomEFDTNode[] multiwayRoutes;
+    private CustomEFDTNode lowerRoute;
+    private CustomEFDTNode upperRoute;
+    private double lowerThreshold;
+    private double upperThreshold;
+    private CustomEFDTNode valueRoute;
+    private CustomEFDTNode defaultRoute;
+    private long valueRouteBits;
+    private long defaultRouteReferenceBits;
+    private int version = 0;
+
     public Successors(Successors other, boolean transferNodes) {
         isBinarySplit = other.isBinary();
         isNumericSplit = !other.isNominal();
@@ -15,12 +32,14 @@ public class Successors extends AbstractMOAObject {
         if (transferNodes) {
             successors = new HashMap<>(other.successors);
         }
+        rebuildRoutingIndex();
     }
 
     public Successors(boolean isBinarySplit, boolean isNumericSplit, Double splitValue) {
         this.isBinarySplit = isBinarySplit;
         this.isNumericSplit = isNumericSplit;
         this.referenceValue = splitValue;
+        rebuildRoutingIndex();
     }
 
     private final boolean isBinarySplit;
@@ -38,7 +57,7 @@ public class Successors extends AbstractMOAObject {
         if (successors.containsKey(key)) {
             return false;
         }
-        successors.put(key, node);
+        putSuccessor(key, node);
         return true;
     }
 
@@ -58,7 +77,7 @@ public class Successors extends AbstractMOAObject {
             return false;
 
         referenceValue = attValue;
-        successors.put(id, n);
+        putSuccessor(id, n);
         return true;
     }
 
@@ -85,7 +104,7 @@ public class Successors extends AbstractMOAObject {
             return false;
 
         referenceValue = attValue;
-        successors.put(id, n);
+        putSuccessor(id, n);
         return true;
     }
 
@@ -103,7 +122,7 @@ public class Successors extends AbstractMOAObject {
         if (successors.containsKey(id))
             return false;
 
-        successors.put(id, n);
+        putSuccessor(id, n);
         return true;
     }
 
@@ -119,7 +138,7 @@ public class Successors extends AbstractMOAObject {
         if (successors.containsKey(id))
             return false;
 
-        successors.put(id, n);
+        putSuccessor(id, n);
         return true;
     }
 
@@ -128,6 +147,40 @@ public class Successors extends AbstractMOAObject {
     }
 
     public CustomEFDTNode getSuccessorNode(Double attributeValue) {
+        if (attributeValue == null)
+            return null;
+        return getSuccessorNode(attributeValue.doubleValue());
+    }
+
+    /**
+     * Routes an attribute value to the matching successor without boxing the value.
+     * @param attributeValue the value of the split attribute
+     * @return the successor the value is routed to. Null, if there is no such successor.
+     */
+    public CustomEFDTNode getSuccessorNode(double attributeValue) {
+        if (!routingIndexValid)
+            return scanForSuccessorNode(attributeValue);
+        if (isNumericSplit) {
+            if (lowerRoute != null && attributeValue <= lowerThreshold)
+                return lowerRoute;
+            if (upperRoute != null && attributeValue > upperThreshold)
+                return upperRoute;
+            return null;
+        }
+        if (isBinarySplit) {
+            if (valueRoute != null && Double.doubleToLongBits(attributeValue) == valueRouteBits)
+                return valueRoute;
+            if (defaultRoute != null && Double.doubleToLongBits(attributeValue) != defaultRouteReferenceBits)
+                return defaultRoute;
+            return null;
+        }
+        int index = (int) attributeValue;
+        if (index != attributeValue || index < 0 || index >= multiwayRoutes.length)
+            return null;
+        return multiwayRoutes[index];
+    }
+
+    private CustomEFDTNode scanForSuccessorNode(Double attributeValue) {
         for (SuccessorIdentifier s : successors.keySet()) {
             if (s.equals(attributeValue))
                 return successors.get(s);
@@ -135,6 +188,84 @@ public class Successors extends AbstractMOAObject {
         return null;
     }
 
+    private void putSuccessor(SuccessorIdentifier key, CustomEFDTNode node) {
+        successors.put(key, node);
+        rebuildRoutingIndex();
+    }
+
+    /**
+     * Rebuilds the routing index from the successor map.
+     * Invalidates the index if the keys are ambiguous, in which case routing falls back to scanning the keys.
+     */
+    private void rebuildRoutingIndex() {
+        version++;
+        multiwayRoutes = null;
+        lowerRoute = null;
+        upperRoute = null;
+        valueRoute = null;
+        defaultRoute = null;
+        routingIndexValid = false;
+
+        if (isNumericSplit) {
+            for (Map.Entry<SuccessorIdentifier, CustomEFDTNode> e : successors.entrySet()) {
+                SuccessorIdentifier key = e.getKey();
+                if (!key.isNumeric() || key.getSelectorValue() == null)
+                    return;
+                if (key.isLower()) {
+                    if (lowerRoute != null)
+                        return;
+                    lowerRoute = e.getValue();
+                    lowerThreshold = key.getSelectorValue();
+                } else {
+                    if (upperRoute != null)
+                        return;
+                    upperRoute = e.getValue();
+                    upperThreshold = key.getSelectorValue();
+                }
+            }
+            // with different thresholds, a value could match both successors
+            routingIndexValid = lowerRoute == null || upperRoute == null || lowerThreshold == upperThreshold;
+        }
+        else if (isBinarySplit) {
+            for (Map.Entry<SuccessorIdentifier, CustomEFDTNode> e : successors.entrySet()) {
+                SuccessorIdentifier key = e.getKey();
+                if (key.isNumeric() || key.getSelectorValue() == null || key.getReferencevalue() == null)
+                    return;
+                if (key.getSelectorValue() == SuccessorIdentifier.DEFAULT_NOMINAL_VALUE) {
+                    if (defaultRoute != null)
+                        return;
+                    defaultRoute = e.getValue();
+                    defaultRouteReferenceBits = Double.doubleToLongBits(key.getReferencevalue());
+                } else {
+                    if (valueRoute != null)
+                        return;
+                    valueRoute = e.getValue();
+                    valueRouteBits = Double.doubleToLongBits(key.getSelectorValue());
+                }
+            }
+            // the default successor must not catch the value of the other successor
+            routingIndexValid = valueRoute == null || defaultRoute == null
+                    || defaultRouteReferenceBits == valueRouteBits;
+        }
+        else {
+            int maxIndex = -1;
+            for (SuccessorIdentifier key : successors.keySet()) {
+                Double value = key.getSelectorValue();
+                if (key.isNumeric() || value == null)
+                    return;
+                int index = (int) value.doubleValue();
+                if (index != value || index < 0 || index >= MAX_MULTIWAY_ROUTES)
+                    return;
+                maxIndex = Math.max(maxIndex, index);
+            }
+            multiwayRoutes = new CustomEFDTNode[maxIndex + 1];
+            for (Map.Entry<SuccessorIdentifier, CustomEFDTNode> e : successors.entrySet()) {
+                multiwayRoutes[e.getKey().getSelectorValue().intValue()] = e.getValue();
+            }
+            routingIndexValid = true;
+        }
+    }
+
     public SuccessorIdentifier getSuccessorKey(Object key) {
         //TODO: Looping over a set is probably not the best way to do this.
         for (SuccessorIdentifier successorKey : successors.keySet()) {
@@ -145,6 +276,22 @@ public class Successors extends AbstractMOAObject {
         return null;
     }
 
+    /**
+     * The version is incremented whenever the successors or their keys change.
+     * @return the current version of the successors
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * If routing can use the routing index or has to fall back to scanning the keys
+     * @return true if the routing index is valid
+     */
+    boolean hasValidRoutingIndex() {
+        return routingIndexValid;
+    }
+
     public boolean isNominal() {
         return !isNumericSplit;
     }
@@ -194,6 +341,7 @@ public class Successors extends AbstractMOAObject {
         }
         referenceValue = newThreshold;
         successors = newSuccessors;
+        rebuildRoutingIndex();
     }
 
     public Collection<CustomEFDTNode> getAllSuccessors() {
@@ -205,11 +353,13 @@ public class Successors extends AbstractMOAObject {
     }
 
     protected void forceSuccessorForKey(SuccessorIdentifier key, CustomEFDTNode node) {
-        successors.put(key, node);
+        putSuccessor(key, node);
     }
 
     protected CustomEFDTNode removeSuccessor(SuccessorIdentifier key) {
-        return successors.remove(key);
+        CustomEFDTNode removed = successors.remove(key);
+        rebuildRoutingIndex();
+        return removed;
     }
 
     @Override
@@ -0,0 +1,340 @@
+package moa.classifiers.trees.plastic_util;
+
+import com.yahoo.labs.samoa.instances.Instances;
+import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
+import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+import moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.core.AutoExpandVector;
+import moa.core.DoubleVector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of CustomEFDT/PLASTIC trees.
+ * <p>
+ *     Java serialization of a tree writes class descriptors, boxed values and the options of every node and observer.
+ *     This codec only writes the learned state of the nodes with primitive encoding, in pre-order:
+ *     the statistics, the attribute observers, the split test, and the successors together with their keys.
+ *     The hyperparameters are not written. The nodes are created by the root (see {@link CustomEFDTNode#newNode})
+ *     that the caller provides, so the owner of the tree has to write and restore its options itself.
+ * </p>
+ * <p>
+ *     Split attributes are written as their index in the header, so the tree must be read with the same header
+ *     the instances will have. Only the node, observer and split test types created by CustomEFDT and PLASTIC
+ *     are supported. Other types fail with an {@link IOException}.
+ * </p>
+ * <p>
+ *     The format starts with {@link #writeHeader(DataOutput)}. Readers reject snapshots with a newer version.
+ * </p>
+ */
+public final class TreeSnapshotCodec {
+    private static final int MAGIC = 0x504C5354;  // "PLST"
+    public static final int VERSION = 1;
+
+    private static final byte CUSTOM_EFDT_NODE = 0;
+    private static final byte PLASTIC_NODE = 1;
+
+    private static final byte NO_OBSERVER = 0;
+    private static final byte GAUSSIAN_OBSERVER = 1;
+    private static final byte NOMINAL_OBSERVER = 2;
+
+    private static final byte NO_SPLIT_TEST = 0;
+    private static final byte NUMERIC_BINARY_TEST = 1;
+    private static final byte NOMINAL_BINARY_TEST = 2;
+    private static final byte NOMINAL_MULTIWAY_TEST = 3;
+
+    private TreeSnapshotCodec() {
+    }
+
+    /**
+     * Writes the magic number and the version of the format
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public static void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Reads and verifies the header written by {@link #writeHeader(DataOutput)}
+     * @param in the input to read from
+     * @return the version of the snapshot
+     * @throws IOException if the input is not a snapshot or if its version is not supported
+     */
+    public static int readHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("The input is not a tree snapshot");
+        int version = in.readInt();
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported tree snapshot version " + version + ", expected at most " + VERSION);
+        return version;
+    }
+
+    /**
+     * Writes the tree below the provided root
+     * @param out the output to write to
+     * @param root the root of the tree
+     * @param header the header of the instances the tree learned from
+     * @throws IOException if writing fails or if the tree contains unsupported types
+     */
+    public static void writeTree(DataOutput out, CustomEFDTNode root, Instances header) throws IOException {
+        Map<String, Integer> attributeIndices = new HashMap<>();
+        int numAttributes = header == null ? 0 : header.numAttributes();
+        for (int i = 0; i < numAttributes; i++) {
+            attributeIndices.put(header.attribute(i).name(), i);
+        }
+        out.writeInt(numAttributes);
+        writeNode(out, root, attributeIndices);
+    }
+
+    /**
+     * Reads a tree written by {@link #writeTree(DataOutput, CustomEFDTNode, Instances)} into the provided root
+     * @param in the input to read from
+     * @param root a new root, configured with the hyperparameters of the written tree
+     * @param header the header of the instances the tree will learn from and predict
+     * @return the root with the restored tree
+     * @throws IOException if reading fails or if the snapshot does not match the root or the header
+     */
+    public static CustomEFDTNode readTree(DataInput in, CustomEFDTNode root, Instances header) throws IOException {
+        int numAttributes = in.readInt();
+        if (header == null || header.numAttributes() != numAttributes)
+            throw new IOException("The snapshot was written for a header with " + numAttributes + " attributes");
+        readNode(in, null, root, header);
+        root.recomputeSubtreeMetrics();
+        return root;
+    }
+
+    private static void writeNode(DataOutput out, CustomEFDTNode node, Map<String, Integer> attributeIndices) throws IOException {
+        out.writeByte(kindOf(node));
+        out.writeInt(node.depth);
+        out.writeInt(node.usedNominalAttributes.size());
+        for (Integer index : node.usedNominalAttributes) {
+            out.writeInt(index);
+        }
+        out.writeInt(node.blockedAttributeIndex);
+        out.writeInt(node.infogainSum.size());
+        for (Map.Entry<Integer, Double> entry : node.infogainSum.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+        out.writeInt(node.numSplitAttempts);
+        out.writeInt(node.nodeTime);
+        out.writeDouble(node.seenWeight);
+        out.writeBoolean(node.performedTreeRevision);
+        node.observedClassDistribution.writeTo(out);
+        out.writeBoolean(node.classDistributionAtTimeOfCreation != null);
+        if (node.classDistributionAtTimeOfCreation != null)
+            node.classDistributionAtTimeOfCreation.writeTo(out);
+        writeObservers(out, node.attributeObservers);
+        writeSplitTest(out, node.getSplitTest());
+
+        if (node.splitAttribute == null) {
+            out.writeInt(-1);
+        } else {
+            Integer attributeIndex = attributeIndices.get(node.splitAttribute.name());
+            if (attributeIndex == null)
+                throw new IOException("The split attribute " + node.splitAttribute.name() + " is not in the header");
+            out.writeInt(attributeIndex);
+        }
+
+        if (node instanceof PlasticNode) {
+            PlasticNode plasticNode = (PlasticNode) node;
+            out.writeBoolean(plasticNode.isArtificial());
+            out.writeBoolean(plasticNode.isDummy());
+            out.writeBoolean(plasticNode.getRestructuredFlag());
+        }
+
+        Successors successors = node.successors;
+        out.writeBoolean(successors != null);
+        if (successors == null)
+            return;
+        out.writeBoolean(successors.isBinary());
+        out.writeBoolean(!successors.isNominal());
+        writeNullableDouble(out, successors.getReferenceValue());
+        out.writeInt(successors.size());
+        for (SuccessorIdentifier key : successors.getKeyset()) {
+            out.writeBoolean(key.isNumeric());
+            writeNullableDouble(out, key.getReferencevalue());
+            writeNullableDouble(out, key.getSelectorValue());
+            out.writeBoolean(key.isLower());
+            writeNode(out, successors.getSuccessorNode(key), attributeIndices);
+        }
+    }
+
+    private static CustomEFDTNode readNode(DataInput in, CustomEFDTNode parent, CustomEFDTNode root, Instances header) throws IOException {
+        byte kind = in.readByte();
+        int depth = in.readInt();
+        int numUsedNominalAttributes = in.readInt();
+        List<Integer> usedNominalAttributes = new ArrayList<>(numUsedNominalAttributes);
+        for (int i = 0; i < numUsedNominalAttributes; i++) {
+            usedNominalAttributes.add(in.readInt());
+        }
+
+        CustomEFDTNode node = parent == null ? root : parent.newNode(depth, new DoubleVector(), usedNominalAttributes);
+        if (kindOf(node) != kind)
+            throw new IOException("The snapshot does not match the node type " + node.getClass().getName());
+        node.depth = depth;
+        node.usedNominalAttributes = usedNominalAttributes;
+        node.blockedAttributeIndex = in.readInt();
+        node.infogainSum.clear();
+        int numInfogainSums = in.readInt();
+        for (int i = 0; i < numInfogainSums; i++) {
+            int attributeIndex = in.readInt();
+            node.infogainSum.put(attributeIndex, in.readDouble());
+        }
+        node.numSplitAttempts = in.readInt();
+        node.nodeTime = in.readInt();
+        node.seenWeight = in.readDouble();
+        node.performedTreeRevision = in.readBoolean();
+        node.observedClassDistribution = DoubleVector.readFrom(in);
+        node.classDistributionAtTimeOfCreation = in.readBoolean() ? DoubleVector.readFrom(in) : null;
+        node.attributeObservers = readObservers(in);
+        node.setSplitTest(readSplitTest(in));
+
+        int attributeIndex = in.readInt();
+        if (attributeIndex >= header.numAttributes())
+            throw new IOException("Invalid split attribute index " + attributeIndex);
+        node.splitAttribute = attributeIndex < 0 ? null : header.attribute(attributeIndex);
+
+        if (node instanceof PlasticNode) {
+            PlasticNode plasticNode = (PlasticNode) node;
+            plasticNode.setIsArtificial(in.readBoolean());
+            plasticNode.setIsDummy(in.readBoolean());
+            if (in.readBoolean())
+                plasticNode.setRestructuredFlag();
+            else
+                plasticNode.resetRestructuredFlag();
+        }
+
+        if (!in.readBoolean()) {
+            node.successors = null;
+            return node;
+        }
+        boolean isBinary = in.readBoolean();
+        boolean isNumeric = in.readBoolean();
+        Successors successors = new Successors(isBinary, isNumeric, readNullableDouble(in));
+        int numSuccessors = in.readInt();
+        for (int i = 0; i < numSuccessors; i++) {
+            boolean isNumericKey = in.readBoolean();
+            Double referenceValue = readNullableDouble(in);
+            Double selectorValue = readNullableDouble(in);
+            boolean isLower = in.readBoolean();
+            SuccessorIdentifier key = new SuccessorIdentifier(isNumericKey, referenceValue, selectorValue, isLower);
+            successors.forceSuccessorForKey(key, readNode(in, node, root, header));
+        }
+        node.successors = successors;
+        return node;
+    }
+
+    private static byte kindOf(CustomEFDTNode node) throws IOException {
+        if (node.getClass() == CustomEFDTNode.class)
+            return CUSTOM_EFDT_NODE;
+        if (node.getClass() == PlasticNode.class)
+            return PLASTIC_NODE;
+        throw new IOException("Unsupported node type " + node.getClass().getName());
+    }
+
+    private static void writeObservers(DataOutput out, AutoExpandVector<AttributeClassObserver> observers) throws IOException {
+        out.writeInt(observers.size());
+        for (AttributeClassObserver observer : observers) {
+            if (observer == null) {
+                out.writeByte(NO_OBSERVER);
+            } else if (observer.getClass() == GaussianNumericAttributeClassObserver.class) {
+                out.writeByte(GAUSSIAN_OBSERVER);
+                ((GaussianNumericAttributeClassObserver) observer).writeTo(out);
+            } else if (observer.getClass() == NominalAttributeClassObserver.class) {
+                out.writeByte(NOMINAL_OBSERVER);
+                ((NominalAttributeClassObserver) observer).writeTo(out);
+            } else {
+                throw new IOException("Unsupported attribute observer " + observer.getClass().getName());
+            }
+        }
+    }
+
+    private static AutoExpandVector<AttributeClassObserver> readObservers(DataInput in) throws IOException {
+        int numObservers = in.readInt();
+        List<AttributeClassObserver> observers = new ArrayList<>(numObservers);
+        for (int i = 0; i < numObservers; i++) {
+            byte type = in.readByte();
+            switch (type) {
+                case NO_OBSERVER:
+                    observers.add(null);
+                    break;
+                case GAUSSIAN_OBSERVER:
+                    observers.add(GaussianNumericAttributeClassObserver.readFrom(in));
+                    break;
+                case NOMINAL_OBSERVER:
+                    observers.add(NominalAttributeClassObserver.readFrom(in));
+                    break;
+                default:
+                    throw new IOException("Invalid attribute observer type " + type);
+            }
+        }
+        AutoExpandVector<AttributeClassObserver> result = new AutoExpandVector<>();
+        result.addAll(observers);
+        return result;
+    }
+
+    private static void writeSplitTest(DataOutput out, InstanceConditionalTest splitTest) throws IOException {
+        if (splitTest == null) {
+            out.writeByte(NO_SPLIT_TEST);
+        } else if (splitTest.getClass() == NumericAttributeBinaryTest.class) {
+            NumericAttributeBinaryTest test = (NumericAttributeBinaryTest) splitTest;
+            out.writeByte(NUMERIC_BINARY_TEST);
+            out.writeInt(test.getAttsTestDependsOn()[0]);
+            out.writeDouble(test.getSplitValue());
+            out.writeBoolean(test.equalsPassesTest());
+        } else if (splitTest.getClass() == NominalAttributeBinaryTest.class) {
+            out.writeByte(NOMINAL_BINARY_TEST);
+            out.writeInt(splitTest.getAttsTestDependsOn()[0]);
+            out.writeInt((int) ((NominalAttributeBinaryTest) splitTest).getValue());
+        } else if (splitTest.getClass() == NominalAttributeMultiwayTest.class) {
+            out.writeByte(NOMINAL_MULTIWAY_TEST);
+            out.writeInt(splitTest.getAttsTestDependsOn()[0]);
+        } else {
+            throw new IOException("Unsupported split test " + splitTest.getClass().getName());
+        }
+    }
+
+    private static InstanceConditionalTest readSplitTest(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NO_SPLIT_TEST:
+                return null;
+            case NUMERIC_BINARY_TEST: {
+                int attIndex = in.readInt();
+                double attValue = in.readDouble();
+                return new NumericAttributeBinaryTest(attIndex, attValue, in.readBoolean());
+            }
+            case NOMINAL_BINARY_TEST: {
+                int attIndex = in.readInt();
+                return new NominalAttributeBinaryTest(attIndex, in.readInt());
+            }
+            case NOMINAL_MULTIWAY_TEST:
+                return new NominalAttributeMultiwayTest(in.readInt());
+            default:
+                throw new IOException("Invalid split test type " + type);
+        }
+    }
+
+    private static void writeNullableDouble(DataOutput out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeDouble(value);
+    }
+
+    private static Double readNullableDouble(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+}
@@ -0,0 +1,239 @@
+package moa.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream that decompresses block gzip files (BGZF, as written by bgzip) in parallel.
+ * <p>
+ *     A block gzip file is a sequence of gzip members, each of which stores its compressed size
+ *     in the "BC" subfield of the extra header field. So the members can be read without decompressing them,
+ *     and are decompressed by a pool of threads while the caller consumes the members read before.
+ *     Closing the stream stops the threads and closes the compressed stream.
+ *     The threads also stop when they are idle, so they do not outlive a stream that is not closed.
+ * </p>
+ */
+public class BlockGzipInputStream extends InputStream {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream in;
+
+    private static final long IDLE_THREAD_TIMEOUT_MS = 1000;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ArrayDeque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    private final int maxPendingBlocks;
+
+    private boolean hitEndOfInput;
+
+    private byte[] block = new byte[0];
+
+    private int position;
+
+    /**
+     * @param in the compressed stream
+     * @param numThreads the number of threads decompressing blocks
+     */
+    public BlockGzipInputStream(InputStream in, int numThreads) {
+        this.in = in;
+        this.executor = new ThreadPoolExecutor(numThreads, numThreads,
+                IDLE_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "BlockGzipInputStream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.maxPendingBlocks = 4 * numThreads;
+    }
+
+    /**
+     * @param header the first bytes of a file
+     * @param length the number of bytes in header
+     * @return true if the file starts with a gzip member that stores its size in a "BC" subfield
+     */
+    public static boolean isBlockGzip(byte[] header, int length) {
+        if (length < 12 || readUnsignedShort(header, 0) != GZIP_MAGIC || (header[3] & FEXTRA) == 0)
+            return false;
+        int extraEnd = Math.min(length, 12 + readUnsignedShort(header, 10));
+        for (int i = 12; i + 4 <= extraEnd; i += 4 + readUnsignedShort(header, i + 2)) {
+            if (header[i] == 'B' && header[i + 1] == 'C' && readUnsignedShort(header, i + 2) == 2)
+                return true;
+        }
+        return false;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readUnsignedShort(bytes, offset) | readUnsignedShort(bytes, offset + 2) << 16;
+    }
+
+    /**
+     * Reads len bytes unless the input ends
+     *
+     * @return the number of bytes read
+     */
+    private int readFully(byte[] bytes, int off, int len) throws IOException {
+        int total = 0;
+        for (int n; total < len && (n = this.in.read(bytes, off + total, len - total)) >= 0; ) {
+            total += n;
+        }
+        return total;
+    }
+
+    private void readExactly(byte[] bytes, int len) throws IOException {
+        if (readFully(bytes, 0, len) < len)
+            throw new EOFException("Unexpected end of block gzip input");
+    }
+
+    /**
+     * Reads the next member and submits its decompression
+     *
+     * @return false if the input has no more members
+     */
+    private boolean submitNextBlock() throws IOException {
+        byte[] header = new byte[12];
+        int length = readFully(header, 0, 12);
+        if (length == 0)
+            return false;
+        if (length < 12 || readUnsignedShort(header, 0) != GZIP_MAGIC || header[2] != 8)
+            throw new ZipException("Not in block gzip format");
+        int flags = header[3];
+        if ((flags & FEXTRA) == 0)
+            throw new ZipException("Gzip member without block size");
+        int headerSize = 12;
+        byte[] extra = new byte[readUnsignedShort(header, 10)];
+        readExactly(extra, extra.length);
+        headerSize += extra.length;
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extra.length; i += 4 + readUnsignedShort(extra, i + 2)) {
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && readUnsignedShort(extra, i + 2) == 2)
+                blockSize = readUnsignedShort(extra, i + 4) + 1;
+        }
+        if (blockSize < 0)
+            throw new ZipException("Gzip member without block size");
+        for (int flag : new int[]{FNAME, FCOMMENT}) {
+            if ((flags & flag) != 0) {
+                for (int c = -1; c != 0; headerSize++) {
+                    if ((c = this.in.read()) < 0)
+                        throw new EOFException("Unexpected end of block gzip input");
+                }
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            readExactly(new byte[2], 2);
+            headerSize += 2;
+        }
+        // compressed data, CRC32 and uncompressed size
+        byte[] data = new byte[blockSize - headerSize];
+        if (data.length < 8)
+            throw new ZipException("Invalid block size");
+        readExactly(data, data.length);
+        this.pendingBlocks.add(this.executor.submit(() -> inflate(data)));
+        return true;
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        int compressedSize = data.length - 8;
+        byte[] block = new byte[readInt(data, compressedSize + 4)];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, 0, compressedSize);
+            int size = 0;
+            while (size < block.length) {
+                int n = inflater.inflate(block, size, block.length - size);
+                if (n == 0 && (inflater.finished() || inflater.needsInput()))
+                    break;
+                size += n;
+            }
+            if (size < block.length)
+                throw new ZipException("Corrupt block gzip block");
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(block, 0, block.length);
+        if ((int) crc.getValue() != readInt(data, compressedSize))
+            throw new ZipException("Corrupt block gzip block (wrong CRC)");
+        return block;
+    }
+
+    /**
+     * @return false if the end of the stream is reached
+     */
+    private boolean nextBlock() throws IOException {
+        do {
+            while (!this.hitEndOfInput && this.pendingBlocks.size() < this.maxPendingBlocks) {
+                this.hitEndOfInput = !submitNextBlock();
+            }
+            if (this.pendingBlocks.isEmpty())
+                return false;
+            try {
+                this.block = this.pendingBlocks.poll().get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            }
+            this.position = 0;
+        } while (this.block.length == 0);  // e.g. the end-of-file marker block
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.position == this.block.length && !nextBlock())
+            return -1;
+        return this.block[this.position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (this.position == this.block.length && !nextBlock())
+            return -1;
+        int n = Math.min(len, this.block.length - this.position);
+        System.arraycopy(this.block, this.position, b, off, n);
+        this.position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return this.block.length - this.position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.executor.shutdownNow();
+        this.pendingBlocks.clear();
+        this.in.close();
+    }
+}
@@ -21,6 +21,10 @@ package moa.core;
 
 import moa.AbstractMOAObject;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Vector of double numbers with some utilities.
  *
@@ -46,6 +50,35 @@ public class DoubleVector extends AbstractMOAObject {
         this(toCopy.getArrayRef());
     }
 
+    /**
+     * Writes the values with primitive encoding, see {@link #readFrom(DataInput)}.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(this.array.length);
+        for (double value : this.array) {
+            out.writeDouble(value);
+        }
+    }
+
+    /**
+     * Reads a vector written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the vector
+     * @throws IOException if reading fails
+     */
+    public static DoubleVector readFrom(DataInput in) throws IOException {
+        DoubleVector vector = new DoubleVector();
+        vector.array = new double[in.readInt()];
+        for (int i = 0; i < vector.array.length; i++) {
+            vector.array[i] = in.readDouble();
+        }
+        return vector;
+    }
+
     public int numValues() {
         return this.array.length;
     }
@@ -21,6 +21,10 @@ package moa.core;
 
 import moa.AbstractMOAObject;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Gaussian incremental estimator that uses incremental method that is more resistant to floating point imprecision.
  * for more info see Donald Knuth's "The Art of Computer Programming, Volume 2: Seminumerical Algorithms", section 4.2.2.
@@ -40,6 +44,47 @@ public class GaussianEstimator extends AbstractMOAObject {
 
     public static final double NORMAL_CONSTANT = Math.sqrt(2 * Math.PI);
 
+    public GaussianEstimator() {
+    }
+
+    /**
+     * Copy constructor that does not rely on serialization.
+     *
+     * @param other the estimator to copy
+     */
+    public GaussianEstimator(GaussianEstimator other) {
+        this.weightSum = other.weightSum;
+        this.mean = other.mean;
+        this.varianceSum = other.varianceSum;
+    }
+
+    /**
+     * Writes the sufficient statistics with primitive encoding, see {@link #readFrom(DataInput)}.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(this.weightSum);
+        out.writeDouble(this.mean);
+        out.writeDouble(this.varianceSum);
+    }
+
+    /**
+     * Reads an estimator written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the estimator
+     * @throws IOException if reading fails
+     */
+    public static GaussianEstimator readFrom(DataInput in) throws IOException {
+        GaussianEstimator estimator = new GaussianEstimator();
+        estimator.weightSum = in.readDouble();
+        estimator.mean = in.readDouble();
+        estimator.varianceSum = in.readDouble();
+        return estimator;
+    }
+
     public void addObservation(double value, double weight) {
         if (Double.isInfinite(value) || Double.isNaN(value)) {
             return;
@@ -32,10 +32,10 @@ import java.io.InputStream;
 public class InputStreamProgressMonitor extends FilterInputStream {
 
 	/** The number of bytes to read in total */
-	protected int inputByteSize;
+	protected volatile int inputByteSize;
 
-	/** The number of bytes read so far */
-	protected int inputBytesRead;
+	/** The number of bytes read so far (might be updated by a thread reading ahead) */
+	protected volatile int inputBytesRead;
 
 	public InputStreamProgressMonitor(InputStream in) {
 		super(in);
@@ -0,0 +1,189 @@
+package moa.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input stream that reads its source in a background thread into a bounded queue of chunks,
+ * so that the source (e.g. a decompressing stream) works while the caller processes the data read before.
+ * Errors of the source are rethrown to the caller once all chunks read before the error are consumed.
+ * <p>
+ *     Closing the stream stops the background thread and closes the source.
+ *     The background thread only holds a weak reference to the stream, so if the caller stops reading
+ *     without closing the stream, the thread closes the source and stops once the stream is garbage collected.
+ * </p>
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final byte[] END = new byte[0];
+
+    // how often a blocked background thread checks whether the stream was closed or collected
+    private static final long OWNER_CHECK_INTERVAL_MS = 1000;
+
+    private final Producer producer;
+
+    private final Thread reader;
+
+    private byte[] chunk = new byte[0];
+
+    private int position;
+
+    private boolean hitEnd;
+
+    /**
+     * @param in the stream to read ahead
+     * @param chunkSize the number of bytes of a chunk
+     * @param numChunks the maximum number of chunks that are read ahead
+     */
+    public ReadAheadInputStream(InputStream in, int chunkSize, int numChunks) {
+        this.producer = new Producer(this, in, chunkSize, numChunks);
+        this.reader = new Thread(this.producer, "ReadAheadInputStream");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * The background thread. It must not reference the stream strongly, see the class comment.
+     */
+    private static class Producer implements Runnable {
+
+        private final WeakReference<ReadAheadInputStream> owner;
+
+        private final InputStream in;
+
+        private final int chunkSize;
+
+        private final BlockingQueue<byte[]> chunks;
+
+        private volatile boolean closed;
+
+        private IOException error;
+
+        Producer(ReadAheadInputStream owner, InputStream in, int chunkSize, int numChunks) {
+            this.owner = new WeakReference<>(owner);
+            this.in = in;
+            this.chunkSize = chunkSize;
+            this.chunks = new ArrayBlockingQueue<>(numChunks);
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = null;
+            int length = this.chunkSize;
+            try {
+                while (length == this.chunkSize && !this.closed) {
+                    buffer = new byte[this.chunkSize];
+                    length = 0;
+                    for (int n; length < this.chunkSize && (n = this.in.read(buffer, length, this.chunkSize - length)) >= 0; ) {
+                        length += n;
+                    }
+                    if (length > 0 && !offer(length == this.chunkSize ? buffer : Arrays.copyOf(buffer, length)))
+                        return;
+                }
+            } catch (IOException e) {
+                this.error = e;
+                if (length > 0 && !offer(Arrays.copyOf(buffer, length)))  // the bytes read before the error
+                    return;
+            }
+            offer(END);
+        }
+
+        /**
+         * Waits until the chunk fits into the queue
+         *
+         * @return false if the stream was closed or collected in the meantime
+         */
+        private boolean offer(byte[] chunk) {
+            try {
+                while (!this.chunks.offer(chunk, OWNER_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    if (this.closed)
+                        return false;
+                    if (this.owner.get() == null) {
+                        closeSource();
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                return false;  // closed
+            }
+        }
+
+        private void closeSource() {
+            try {
+                this.in.close();
+            } catch (IOException e) {
+                // nobody reads the stream anymore
+            }
+        }
+    }
+
+    /**
+     * @return false if the end of the stream is reached
+     */
+    private boolean nextChunk() throws IOException {
+        if (this.hitEnd)
+            return false;
+        try {
+            this.chunk = this.producer.chunks.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        this.position = 0;
+        if (this.chunk == END) {
+            this.hitEnd = true;
+            if (this.producer.error != null)  // the queue publishes the error
+                throw this.producer.error;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.position == this.chunk.length && !nextChunk())
+            return -1;
+        return this.chunk[this.position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (this.position == this.chunk.length && !nextChunk())
+            return -1;
+        int n = Math.min(len, this.chunk.length - this.position);
+        System.arraycopy(this.chunk, this.position, b, off, n);
+        this.position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return this.chunk.length - this.position;
+    }
+
+    /**
+     * Stops the background thread and closes the source
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.producer.closed)
+            return;
+        this.producer.closed = true;
+        this.reader.interrupt();
+        this.producer.chunks.clear();
+        try {
+            this.reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.producer.in.close();
+    }
+}
@@ -0,0 +1,96 @@
+package moa.evaluation;
+
+import moa.core.Measurement;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the windows of a prequential evaluation to a CSV file as soon as they are complete.
+ * Only the cumulative results are kept in memory.
+ * <p>
+ *     Each row holds the number of processed instances, the windowed measurements,
+ *     whether a tree revision was performed, and the number of leaves (empty if not recorded).
+ * </p>
+ * <p>
+ *     The file is closed by {@link #finish(Measurement[])} or, if writing fails, right away.
+ *     Callers that might abort the evaluation should also call {@link #close()}.
+ * </p>
+ */
+public class CSVPrequentialResultSink implements PrequentialResultSink, Closeable {
+
+    private final File file;
+    private Writer writer;
+    private double[] cumulativeResults = null;
+
+    public CSVPrequentialResultSink(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void addWindow(long instancesProcessed, Measurement[] windowedMeasurements, boolean performedTreeRevision, int numberOfLeaves) {
+        try {
+            if (writer == null) {
+                writer = new BufferedWriter(new FileWriter(file));
+                writer.write("instances processed");
+                if (windowedMeasurements != null) {
+                    for (Measurement measurement : windowedMeasurements)
+                        writer.write("," + measurement.getName());
+                }
+                writer.write(",tree revision,number of leaves\n");
+            }
+            writer.write(Long.toString(instancesProcessed));
+            if (windowedMeasurements != null) {
+                for (Measurement measurement : windowedMeasurements)
+                    writer.write("," + measurement.getValue());
+            }
+            writer.write(performedTreeRevision ? ",1," : ",0,");
+            if (numberOfLeaves != NOT_RECORDED)
+                writer.write(Integer.toString(numberOfLeaves));
+            writer.write("\n");
+        } catch (IOException e) {
+            try {
+                close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw new RuntimeException("Unable to write result file: " + file, e);
+        }
+    }
+
+    @Override
+    public void finish(Measurement[] cumulativeMeasurements) {
+        if (cumulativeMeasurements != null) {
+            cumulativeResults = new double[cumulativeMeasurements.length];
+            for (int i = 0; i < cumulativeResults.length; i++)
+                cumulativeResults[i] = cumulativeMeasurements[i].getValue();
+        }
+        try {
+            close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write result file: " + file, e);
+        }
+    }
+
+    /**
+     * Closes the file. Does nothing if it is not open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } finally {
+            writer = null;
+        }
+    }
+
+    public double[] getCumulativeResults() {
+        return cumulativeResults;
+    }
+}
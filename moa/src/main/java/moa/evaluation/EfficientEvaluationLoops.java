@@ -1,6 +1,7 @@
 package moa.evaluation;
 
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 import moa.classifiers.SemiSupervisedLearner;
 //import moa.classifiers.semisupervised.ClusterAndLabelClassifier;
 import moa.classifiers.trees.plastic_util.MeasuresNumberOfLeaves;
@@ -9,13 +10,23 @@ import moa.core.Example;
 import moa.core.Measurement;
 import moa.learners.Learner;
 import moa.streams.ArffFileStream;
+import moa.streams.CachedInstancesStream;
 import moa.streams.ExampleStream;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.trees.FIMTDD;
@@ -26,6 +37,10 @@ import org.apache.commons.math3.random.RandomGenerator;
 
 public class EfficientEvaluationLoops {
 
+    /**
+     * The results of a prequential evaluation.
+     * The prequential loops store their results in {@link PrequentialResultColumns} (see {@link #getColumns()}).
+     */
     public static class PrequentialResult {
         public ArrayList<double[]> windowedResults;
         public double[] cumulativeResults;
@@ -34,6 +49,18 @@ public class EfficientEvaluationLoops {
 
         public HashMap<String, Double> otherMeasurements;
 
+        private PrequentialResultColumns columns;
+
+        public PrequentialResult(PrequentialResultColumns columns) {
+            this.columns = columns;
+            this.windowedResults = new ArrayList<>(columns.getNumWindows());
+            for (int i = 0; i < columns.getNumWindows(); i++)
+                this.windowedResults.add(columns.getWindow(i));
+            this.cumulativeResults = columns.getCumulativeResults();
+            this.treeRevisionIndices = boxed(columns.getTreeRevisionIndices());
+            this.numberOfLeaves = boxed(columns.getNumberOfLeaves());
+        }
+
         public PrequentialResult(ArrayList<double[]> windowedResults,
                                  double[] cumulativeResults) {
             this.windowedResults = windowedResults;
@@ -55,6 +82,36 @@ public class EfficientEvaluationLoops {
             this(windowedResults, cumulativeResults);
             this.otherMeasurements = otherMeasurements;
         }
+
+        /**
+         * @return the columns of the results, or null if the result was created from boxed lists
+         */
+        public PrequentialResultColumns getColumns() {
+            return columns;
+        }
+
+        public ArrayList<double[]> getWindowedResults() {
+            return windowedResults;
+        }
+
+        public double[] getCumulativeResults() {
+            return cumulativeResults;
+        }
+
+        public LinkedList<Integer> getTreeRevisionIndices() {
+            return treeRevisionIndices;
+        }
+
+        public LinkedList<Integer> getNumberOfLeaves() {
+            return numberOfLeaves;
+        }
+
+        private static LinkedList<Integer> boxed(int[] values) {
+            LinkedList<Integer> list = new LinkedList<>();
+            for (int value : values)
+                list.add(value);
+            return list;
+        }
     }
 
     /***
@@ -76,77 +133,331 @@ public class EfficientEvaluationLoops {
                                                           LearningPerformanceEvaluator windowedEvaluator,
                                                           long maxInstances, long windowSize,
                                                           boolean recordTreeRevisions, boolean recordNumberOfLeaves) {
-        int instancesProcessed = 0;
+        PrequentialResultColumns columns = new PrequentialResultColumns();
+        PrequentialEvaluation(stream, learner, basicEvaluator, windowedEvaluator, maxInstances, windowSize,
+                recordTreeRevisions, recordNumberOfLeaves, columns);
+        return new PrequentialResult(columns);
+    }
 
-        LinkedList<Integer> treeRevisionIndices = new LinkedList<>();
-        LinkedList<Integer> numberOfLeaves = new LinkedList<>();
+    /***
+     * Same as above, but hands the results of each window to the sink as soon as the window is complete.
+     * With a streaming sink (e.g., CSVPrequentialResultSink), the memory stays constant regardless of the stream length.
+     * @param stream
+     * @param learner
+     * @param basicEvaluator
+     * @param windowedEvaluator
+     * @param maxInstances
+     * @param windowSize
+     * @param sink receives the windows and, at the end, the cumulative results
+     */
+    public static void PrequentialEvaluation(ExampleStream stream, Learner learner,
+                                             LearningPerformanceEvaluator basicEvaluator,
+                                             LearningPerformanceEvaluator windowedEvaluator,
+                                             long maxInstances, long windowSize,
+                                             boolean recordTreeRevisions, boolean recordNumberOfLeaves,
+                                             PrequentialResultSink sink) {
+        int instancesProcessed = 0;
 
         if (!stream.hasMoreInstances())
             stream.restart();
 
-        ArrayList<double[]> windowed_results = new ArrayList<>();
+        // each example is done with before the next one is taken, so the stream may recycle it
+        // unless the learner keeps references to the examples (the evaluators do not)
+        int previousInstanceReuse = stream.getInstanceReuse();
+        stream.setInstanceReuse(learner.retainsInstances() ? 0 : 1);
+        try {
+            while (stream.hasMoreInstances() &&
+                    (maxInstances == -1 || instancesProcessed < maxInstances)) {
 
-        while (stream.hasMoreInstances() &&
-                (maxInstances == -1 || instancesProcessed < maxInstances)) {
+                Example instance = stream.nextInstance();
 
-            Example instance = stream.nextInstance();
+                double[] prediction = learner.getVotesForInstance(instance);
+                if (basicEvaluator != null)
+                    basicEvaluator.addResult(instance, prediction);
+                if (windowedEvaluator != null)
+                    windowedEvaluator.addResult(instance, prediction);
 
-            double[] prediction = learner.getVotesForInstance(instance);
-            if (basicEvaluator != null)
-                basicEvaluator.addResult(instance, prediction);
-            if (windowedEvaluator != null)
-                windowedEvaluator.addResult(instance, prediction);
+                learner.trainOnInstance(instance);
 
-            learner.trainOnInstance(instance);
+                instancesProcessed++;
 
-            instancesProcessed++;
+                if (instancesProcessed % windowSize == 0)
+                    addWindow(sink, instancesProcessed, learner, windowedEvaluator, recordTreeRevisions, recordNumberOfLeaves);
+            }
+        } finally {
+            stream.setInstanceReuse(previousInstanceReuse);
+        }
+        if (windowedEvaluator != null && instancesProcessed % windowSize != 0)
+            addWindow(sink, instancesProcessed, learner, windowedEvaluator, recordTreeRevisions, recordNumberOfLeaves);
 
-            if (windowedEvaluator != null)
-                if (instancesProcessed % windowSize == 0) {
-                    Measurement[] measurements = windowedEvaluator.getPerformanceMeasurements();
-                    double[] values = new double[measurements.length];
-                    for (int i = 0; i < values.length; ++i)
-                        values[i] = measurements[i].getValue();
-                    windowed_results.add(values);
+        sink.finish(basicEvaluator == null ? null : basicEvaluator.getPerformanceMeasurements());
+    }
+
+    private static void addWindow(PrequentialResultSink sink, int instancesProcessed, Learner learner,
+                                  LearningPerformanceEvaluator windowedEvaluator,
+                                  boolean recordTreeRevisions, boolean recordNumberOfLeaves) {
+        Measurement[] measurements = windowedEvaluator == null ? null : windowedEvaluator.getPerformanceMeasurements();
+        boolean performedTreeRevision = recordTreeRevisions && learner instanceof PerformsTreeRevision
+                && ((PerformsTreeRevision) learner).didPerformTreeRevision();
+        int numberOfLeaves = recordNumberOfLeaves && learner instanceof MeasuresNumberOfLeaves ?
+                ((MeasuresNumberOfLeaves) learner).getLeafNumber() : PrequentialResultSink.NOT_RECORDED;
+        sink.addWindow(instancesProcessed, measurements, performedTreeRevision, numberOfLeaves);
+    }
+
+    /***
+     * Same as PrequentialEvaluation, but pipelined over three threads. The results are identical.
+     * A producer thread reads the stream ahead of the learner into a bounded queue,
+     * the calling thread only tests and trains the learner,
+     * and a consumer thread updates the evaluators with the predictions.
+     * The stream must create a new instance for every call to nextInstance (as ArffFileStream and the generators do),
+     * and the learner must not modify the instances it trains on.
+     * @param stream
+     * @param learner
+     * @param basicEvaluator
+     * @param windowedEvaluator
+     * @param maxInstances
+     * @param windowSize
+     * @param queueCapacity the maximum number of instances waiting in each of the two queues
+     * @return the return has to be an ArrayList because we don't know ahead of time how many windows will be produced
+     */
+    public static PrequentialResult PipelinedPrequentialEvaluation(ExampleStream stream, Learner learner,
+                                                                   LearningPerformanceEvaluator basicEvaluator,
+                                                                   LearningPerformanceEvaluator windowedEvaluator,
+                                                                   long maxInstances, long windowSize,
+                                                                   boolean recordTreeRevisions, boolean recordNumberOfLeaves,
+                                                                   int queueCapacity) {
+        // the evaluator thread adds the windowed measurements, the calling thread the tree revisions and leaf counts
+        PrequentialResultColumns columns = new PrequentialResultColumns();
+
+        if (!stream.hasMoreInstances())
+            stream.restart();
+        // the queues hold instances while the stream reads ahead, so the stream must not recycle them
+        int previousInstanceReuse = stream.getInstanceReuse();
+        stream.setInstanceReuse(0);
+
+        // the stages exchange chunks of instances to keep the synchronization overhead low.
+        // A chunk that is shorter than PIPELINE_CHUNK_SIZE is the last one.
+        int capacityInChunks = Math.max(1, (queueCapacity + PIPELINE_CHUNK_SIZE - 1) / PIPELINE_CHUNK_SIZE);
+        BlockingQueue<Example[]> examples = new ArrayBlockingQueue<>(capacityInChunks);
+        BlockingQueue<TestedChunk> tested = new ArrayBlockingQueue<>(capacityInChunks);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2, daemonThreads("prequential-evaluation-pipeline"));
+        try {
+            Future<?> reader = executor.submit(() -> {
+                long numRead = 0;
+                while (true) {
+                    int size = maxInstances == -1 ?
+                            PIPELINE_CHUNK_SIZE : (int) Math.min(PIPELINE_CHUNK_SIZE, maxInstances - numRead);
+                    Example[] chunk = new Example[size];
+                    int n = 0;
+                    while (n < size && stream.hasMoreInstances())
+                        chunk[n++] = stream.nextInstance();
+                    numRead += n;
+                    examples.put(n == size ? chunk : Arrays.copyOf(chunk, n));
+                    if (n < PIPELINE_CHUNK_SIZE)
+                        return null;
                 }
+            });
 
-            if (instancesProcessed % windowSize == 0) {
-                if (recordTreeRevisions && learner instanceof PerformsTreeRevision) {
-                    if (((PerformsTreeRevision) learner).didPerformTreeRevision())
-                        treeRevisionIndices.add(instancesProcessed);
+            Future<?> evaluator = executor.submit(() -> {
+                long instancesEvaluated = 0;
+                while (true) {
+                    TestedChunk chunk = take(tested, null);
+                    for (int i = 0; i < chunk.examples.length; i++) {
+                        if (basicEvaluator != null)
+                            basicEvaluator.addResult(chunk.examples[i], chunk.predictions[i]);
+                        if (windowedEvaluator != null)
+                            windowedEvaluator.addResult(chunk.examples[i], chunk.predictions[i]);
+                        instancesEvaluated++;
+                        if (windowedEvaluator != null && instancesEvaluated % windowSize == 0)
+                            columns.addWindowedMeasurements(windowedEvaluator.getPerformanceMeasurements());
+                    }
+                    if (chunk.examples.length < PIPELINE_CHUNK_SIZE)
+                        break;
                 }
-                if (recordNumberOfLeaves && learner instanceof MeasuresNumberOfLeaves) {
-                    numberOfLeaves.add(((MeasuresNumberOfLeaves) learner).getLeafNumber());
+                if (windowedEvaluator != null && instancesEvaluated % windowSize != 0)
+                    columns.addWindowedMeasurements(windowedEvaluator.getPerformanceMeasurements());
+                return null;
+            });
+
+            int instancesProcessed = 0;
+            while (true) {
+                Example[] chunk = take(examples, reader);
+                double[][] predictions = new double[chunk.length][];
+                for (int i = 0; i < chunk.length; i++) {
+                    predictions[i] = learner.getVotesForInstance(chunk[i]);
+                    learner.trainOnInstance(chunk[i]);
+                    instancesProcessed++;
+
+                    if (instancesProcessed % windowSize == 0)
+                        addTreeMeasurements(columns, instancesProcessed, learner, recordTreeRevisions, recordNumberOfLeaves);
                 }
+                put(tested, new TestedChunk(chunk, predictions), evaluator);
+                if (chunk.length < PIPELINE_CHUNK_SIZE)
+                    break;
             }
+            if (windowedEvaluator != null && instancesProcessed % windowSize != 0)
+                addTreeMeasurements(columns, instancesProcessed, learner, recordTreeRevisions, recordNumberOfLeaves);
+            reader.get();
+            evaluator.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Evaluation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Evaluation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            stream.setInstanceReuse(previousInstanceReuse);
         }
-        if (windowedEvaluator != null)
-            if (instancesProcessed % windowSize != 0) {
-                Measurement[] measurements = windowedEvaluator.getPerformanceMeasurements();
-                double[] values = new double[measurements.length];
-                for (int i = 0; i < values.length; ++i)
-                    values[i] = measurements[i].getValue();
-                windowed_results.add(values);
 
-                if (recordTreeRevisions && learner instanceof PerformsTreeRevision) {
-                    if (((PerformsTreeRevision) learner).didPerformTreeRevision())
-                        treeRevisionIndices.add(instancesProcessed);
-                }
-                if (recordNumberOfLeaves && learner instanceof MeasuresNumberOfLeaves) {
-                    numberOfLeaves.add(((MeasuresNumberOfLeaves) learner).getLeafNumber());
-                }
+        columns.finish(basicEvaluator == null ? null : basicEvaluator.getPerformanceMeasurements());
+        return new PrequentialResult(columns);
+    }
+
+    private static void addTreeMeasurements(PrequentialResultColumns columns, int instancesProcessed, Learner learner,
+                                            boolean recordTreeRevisions, boolean recordNumberOfLeaves) {
+        if (recordTreeRevisions && learner instanceof PerformsTreeRevision
+                && ((PerformsTreeRevision) learner).didPerformTreeRevision())
+            columns.addTreeRevision(instancesProcessed);
+        if (recordNumberOfLeaves && learner instanceof MeasuresNumberOfLeaves)
+            columns.addNumberOfLeaves(((MeasuresNumberOfLeaves) learner).getLeafNumber());
+    }
+
+    public static PrequentialResult PipelinedPrequentialEvaluation(ExampleStream stream, Learner learner,
+                                                                   LearningPerformanceEvaluator basicEvaluator,
+                                                                   LearningPerformanceEvaluator windowedEvaluator,
+                                                                   long maxInstances, long windowSize,
+                                                                   boolean recordTreeRevisions, boolean recordNumberOfLeaves) {
+        return PipelinedPrequentialEvaluation(stream, learner, basicEvaluator, windowedEvaluator, maxInstances,
+                windowSize, recordTreeRevisions, recordNumberOfLeaves, DEFAULT_PIPELINE_QUEUE_CAPACITY);
+    }
+
+    /***
+     * Runs PrequentialEvaluation for several configurations (e.g., PLASTIC with different options) in parallel.
+     * The stream is read and decoded only once. Its instances are cached in memory
+     * and each configuration reads them through its own CachedInstancesStream.
+     * The learners must not modify the instances they train on since the instances are shared.
+     * @param stream
+     * @param learners one learner per configuration
+     * @param basicEvaluators one evaluator per configuration, or null
+     * @param windowedEvaluators one evaluator per configuration, or null
+     * @param maxInstances
+     * @param windowSize
+     * @param numThreads the number of configurations that are evaluated at the same time
+     * @return one result per configuration, in the order of the learners
+     */
+    public static List<PrequentialResult> ParallelPrequentialEvaluation(ExampleStream stream, List<? extends Learner> learners,
+                                                                        List<? extends LearningPerformanceEvaluator> basicEvaluators,
+                                                                        List<? extends LearningPerformanceEvaluator> windowedEvaluators,
+                                                                        long maxInstances, long windowSize,
+                                                                        boolean recordTreeRevisions, boolean recordNumberOfLeaves,
+                                                                        int numThreads) {
+        if (basicEvaluators != null && basicEvaluators.size() != learners.size())
+            throw new IllegalArgumentException("Expected one basic evaluator per learner");
+        if (windowedEvaluators != null && windowedEvaluators.size() != learners.size())
+            throw new IllegalArgumentException("Expected one windowed evaluator per learner");
+
+        if (!stream.hasMoreInstances())
+            stream.restart();
+
+        // the cache keeps the instances, so the stream must not recycle them
+        int previousInstanceReuse = stream.getInstanceReuse();
+        stream.setInstanceReuse(0);
+        Instances cache = new Instances(stream.getHeader(), 0);
+        try {
+            while (stream.hasMoreInstances() && (maxInstances == -1 || cache.numInstances() < maxInstances))
+                cache.add((Instance) stream.nextInstance().getData());
+        } finally {
+            stream.setInstanceReuse(previousInstanceReuse);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, daemonThreads("prequential-evaluation-worker"));
+        try {
+            List<Future<PrequentialResult>> futures = new ArrayList<>(learners.size());
+            for (int i = 0; i < learners.size(); i++) {
+                Learner learner = learners.get(i);
+                LearningPerformanceEvaluator basicEvaluator = basicEvaluators == null ? null : basicEvaluators.get(i);
+                LearningPerformanceEvaluator windowedEvaluator = windowedEvaluators == null ? null : windowedEvaluators.get(i);
+                futures.add(executor.submit(() -> PrequentialEvaluation(
+                        new CachedInstancesStream(cache), learner, basicEvaluator, windowedEvaluator,
+                        -1, windowSize, recordTreeRevisions, recordNumberOfLeaves)));
             }
+            List<PrequentialResult> results = new ArrayList<>(futures.size());
+            for (Future<PrequentialResult> future : futures)
+                results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Evaluation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Evaluation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        double[] cumulative_results = null;
+    private static final int PIPELINE_CHUNK_SIZE = 256;
+    private static final int DEFAULT_PIPELINE_QUEUE_CAPACITY = 8192;
+    private static final long PIPELINE_POLL_INTERVAL_MS = 100;
 
-        if (basicEvaluator != null) {
-            Measurement[] measurements = basicEvaluator.getPerformanceMeasurements();
-            cumulative_results = new double[measurements.length];
-            for (int i = 0; i < cumulative_results.length; ++i)
-                cumulative_results[i] = measurements[i].getValue();
+    /**
+     * The instances of a chunk together with the predictions of the learner
+     */
+    private static class TestedChunk {
+        final Example[] examples;
+        final double[][] predictions;
+
+        TestedChunk(Example[] examples, double[][] predictions) {
+            this.examples = examples;
+            this.predictions = predictions;
+        }
+    }
+
+    /**
+     * Takes the next item from the queue. Fails if the producer of the queue failed instead of waiting forever.
+     */
+    private static <T> T take(BlockingQueue<T> queue, Future<?> producer) throws InterruptedException, ExecutionException {
+        if (producer == null)
+            return queue.take();
+        while (true) {
+            T item = queue.poll(PIPELINE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            if (item != null)
+                return item;
+            if (producer.isDone()) {
+                producer.get();
+                item = queue.poll();
+                if (item != null)
+                    return item;
+                throw new IllegalStateException("The producer finished without marking the last chunk");
+            }
+        }
+    }
+
+    /**
+     * Puts the item into the queue. Fails if the consumer of the queue failed instead of waiting forever.
+     */
+    private static <T> void put(BlockingQueue<T> queue, T item, Future<?> consumer) throws InterruptedException, ExecutionException {
+        while (!queue.offer(item, PIPELINE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            if (consumer.isDone()) {
+                consumer.get();
+                throw new IllegalStateException("The consumer finished before the last chunk");
+            }
         }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 
-        return new PrequentialResult(windowed_results, cumulative_results, treeRevisionIndices, numberOfLeaves);
+    private static double[] getValues(Measurement[] measurements) {
+        double[] values = new double[measurements.length];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = measurements[i].getValue();
+        return values;
     }
 
     public static PrequentialResult PrequentialSSLEvaluation(ExampleStream stream, Learner learner,
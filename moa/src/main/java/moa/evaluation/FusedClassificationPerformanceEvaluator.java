@@ -0,0 +1,284 @@
+package moa.evaluation;
+
+import com.github.javacliparser.FlagOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Prediction;
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.core.Utils;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+import java.util.ArrayList;
+
+/**
+ * Cumulative classification evaluator that gives the same measurements as {@link BasicClassificationPerformanceEvaluator}.
+ * <p>
+ *     Instead of updating several estimators per class for each instance, it keeps primitive counters:
+ *     the weights of the predicted, true and correctly predicted classes, and a confusion matrix of counts.
+ *     All sums are accumulated in the same order as in BasicClassificationPerformanceEvaluator, so the results are identical.
+ * </p>
+ */
+public class FusedClassificationPerformanceEvaluator extends AbstractOptionHandler
+        implements ClassificationPerformanceEvaluator {
+
+    private static final long serialVersionUID = 1L;
+
+    public FlagOption precisionRecallOutputOption = new FlagOption("precisionRecallOutput",
+            'o',
+            "Outputs average precision, recall and F1 scores.");
+
+    public FlagOption precisionPerClassOption = new FlagOption("precisionPerClass",
+            'p',
+            "Report precision per class.");
+
+    public FlagOption recallPerClassOption = new FlagOption("recallPerClass",
+            'r',
+            "Report recall per class.");
+
+    public FlagOption f1PerClassOption = new FlagOption("f1PerClass", 'f',
+            "Report F1 per class.");
+
+    private int numClasses;
+
+    // counts and weights of the instances with positive weight
+    private long numWeighted;
+    private double weightCorrect;
+    private double[] weightPredicted;
+    private double[] weightTrue;
+    private double[] weightCorrectPerClass;
+    private long[] countTrue;
+    private long[] confusionMatrix;  // row: true class, column: predicted class
+
+    // counts and weights of all instances with a class (including those with weight 0)
+    private long numLabeled;
+    private double weightCorrectNoChangeClassifier;
+    private double weightCorrectMajorityClassifier;
+
+    private int lastSeenClass;
+
+    private double totalWeightObserved;
+
+    @Override
+    public void reset() {
+        reset(this.numClasses);
+    }
+
+    public void reset(int numClasses) {
+        this.numClasses = numClasses;
+        this.numWeighted = 0;
+        this.weightCorrect = 0;
+        this.weightPredicted = new double[numClasses];
+        this.weightTrue = new double[numClasses];
+        this.weightCorrectPerClass = new double[numClasses];
+        this.countTrue = new long[numClasses];
+        this.confusionMatrix = new long[numClasses * numClasses];
+        this.numLabeled = 0;
+        this.weightCorrectNoChangeClassifier = 0;
+        this.weightCorrectMajorityClassifier = 0;
+        this.lastSeenClass = 0;
+        this.totalWeightObserved = 0;
+    }
+
+    @Override
+    public void addResult(Example<Instance> example, double[] classVotes) {
+        Instance inst = example.getData();
+        if (inst.classIsMissing())
+            return;
+        double weight = inst.weight();
+        int trueClass = (int) inst.classValue();
+        int predictedClass = Utils.maxIndex(classVotes);
+        if (weight > 0.0) {
+            if (this.totalWeightObserved == 0) {
+                reset(inst.dataset().numClasses());
+            }
+            this.totalWeightObserved += weight;
+            this.numWeighted++;
+            if (predictedClass == trueClass) {
+                this.weightCorrect += weight;
+                this.weightCorrectPerClass[trueClass] += weight;
+            }
+            this.weightTrue[trueClass] += weight;
+            this.countTrue[trueClass]++;  // also counts the predictions that are not in the confusion matrix
+            if (predictedClass < this.numClasses) {  // the learner might vote for more classes than the header has
+                this.weightPredicted[predictedClass] += weight;
+                this.confusionMatrix[trueClass * this.numClasses + predictedClass]++;
+            }
+        }
+        if (this.weightTrue == null)
+            return;  // nothing was reset yet
+        this.numLabeled++;
+        if (this.lastSeenClass == trueClass)
+            this.weightCorrectNoChangeClassifier += weight;
+        if (getMajorityClass() == trueClass)
+            this.weightCorrectMajorityClassifier += weight;
+        this.lastSeenClass = trueClass;
+    }
+
+    @Override
+    public void addResult(Example<Instance> testInst, Prediction prediction) {
+    }
+
+    private int getMajorityClass() {
+        int majorityClass = 0;
+        double maxProbClass = 0.0;
+        for (int i = 0; i < this.numClasses; i++) {
+            double probClass = this.weightTrue[i] / this.numWeighted;
+            if (probClass > maxProbClass) {
+                majorityClass = i;
+                maxProbClass = probClass;
+            }
+        }
+        return majorityClass;
+    }
+
+    @Override
+    public Measurement[] getPerformanceMeasurements() {
+        ArrayList<Measurement> measurements = new ArrayList<Measurement>();
+        measurements.add(new Measurement("classified instances", this.getTotalWeightObserved()));
+        measurements.add(new Measurement("classifications correct (percent)", this.getFractionCorrectlyClassified() * 100.0));
+        measurements.add(new Measurement("Kappa Statistic (percent)", this.getKappaStatistic() * 100.0));
+        measurements.add(new Measurement("Kappa Temporal Statistic (percent)", this.getKappaTemporalStatistic() * 100.0));
+        measurements.add(new Measurement("Kappa M Statistic (percent)", this.getKappaMStatistic() * 100.0));
+        if (precisionRecallOutputOption.isSet())
+            measurements.add(new Measurement("F1 Score (percent)",
+                    this.getF1Statistic() * 100.0));
+        if (f1PerClassOption.isSet()) {
+            for (int i = 0; i < this.numClasses; i++) {
+                measurements.add(new Measurement("F1 Score for class " + i +
+                        " (percent)", 100.0 * this.getF1Statistic(i)));
+            }
+        }
+        if (precisionRecallOutputOption.isSet())
+            measurements.add(new Measurement("Precision (percent)",
+                    this.getPrecisionStatistic() * 100.0));
+        if (precisionPerClassOption.isSet()) {
+            for (int i = 0; i < this.numClasses; i++) {
+                measurements.add(new Measurement("Precision for class " + i +
+                        " (percent)", 100.0 * this.getPrecisionStatistic(i)));
+            }
+        }
+        if (precisionRecallOutputOption.isSet())
+            measurements.add(new Measurement("Recall (percent)",
+                    this.getRecallStatistic() * 100.0));
+        if (recallPerClassOption.isSet()) {
+            for (int i = 0; i < this.numClasses; i++) {
+                measurements.add(new Measurement("Recall for class " + i +
+                        " (percent)", 100.0 * this.getRecallStatistic(i)));
+            }
+        }
+
+        Measurement[] result = new Measurement[measurements.size()];
+
+        return measurements.toArray(result);
+    }
+
+    public double getTotalWeightObserved() {
+        return this.totalWeightObserved;
+    }
+
+    public double getFractionCorrectlyClassified() {
+        return this.weightCorrect / this.numWeighted;
+    }
+
+    public double getFractionIncorrectlyClassified() {
+        return 1.0 - getFractionCorrectlyClassified();
+    }
+
+    public double getKappaStatistic() {
+        if (this.getTotalWeightObserved() > 0.0) {
+            double p0 = getFractionCorrectlyClassified();
+            double pc = 0.0;
+            for (int i = 0; i < this.numClasses; i++) {
+                pc += (this.weightPredicted[i] / this.numWeighted)
+                        * (this.weightTrue[i] / this.numWeighted);
+            }
+            return (p0 - pc) / (1.0 - pc);
+        } else {
+            return 0;
+        }
+    }
+
+    public double getKappaTemporalStatistic() {
+        if (this.getTotalWeightObserved() > 0.0) {
+            double p0 = getFractionCorrectlyClassified();
+            double pc = this.weightCorrectNoChangeClassifier / this.numLabeled;
+
+            return (p0 - pc) / (1.0 - pc);
+        } else {
+            return 0;
+        }
+    }
+
+    public double getKappaMStatistic() {
+        if (this.getTotalWeightObserved() > 0.0) {
+            double p0 = getFractionCorrectlyClassified();
+            double pc = this.weightCorrectMajorityClassifier / this.numLabeled;
+
+            return (p0 - pc) / (1.0 - pc);
+        } else {
+            return 0;
+        }
+    }
+
+    public double getPrecisionStatistic() {
+        double total = 0;
+        for (int i = 0; i < this.numClasses; i++) {
+            total += getPrecisionStatistic(i);
+        }
+        return total / this.numClasses;
+    }
+
+    public double getPrecisionStatistic(int numClass) {
+        long numPredicted = 0;
+        for (int i = 0; i < this.numClasses; i++) {
+            numPredicted += this.confusionMatrix[i * this.numClasses + numClass];
+        }
+        return this.weightCorrectPerClass[numClass] / numPredicted;
+    }
+
+    public double getRecallStatistic() {
+        double total = 0;
+        for (int i = 0; i < this.numClasses; i++) {
+            total += getRecallStatistic(i);
+        }
+        return total / this.numClasses;
+    }
+
+    public double getRecallStatistic(int numClass) {
+        return this.weightCorrectPerClass[numClass] / this.countTrue[numClass];
+    }
+
+    public double getF1Statistic() {
+        return 2 * ((this.getPrecisionStatistic() * this.getRecallStatistic())
+                / (this.getPrecisionStatistic() + this.getRecallStatistic()));
+    }
+
+    public double getF1Statistic(int numClass) {
+        return 2 * ((this.getPrecisionStatistic(numClass) * this.getRecallStatistic(numClass))
+                / (this.getPrecisionStatistic(numClass) + this.getRecallStatistic(numClass)));
+    }
+
+    /**
+     * @return the number of instances per true class (rows) and predicted class (columns)
+     */
+    public long[][] getConfusionMatrix() {
+        long[][] matrix = new long[this.numClasses][this.numClasses];
+        for (int i = 0; i < this.numClasses; i++) {
+            System.arraycopy(this.confusionMatrix, i * this.numClasses, matrix[i], 0, this.numClasses);
+        }
+        return matrix;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        Measurement.getMeasurementsDescription(getPerformanceMeasurements(),
+                sb, indent);
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+
+    }
+}
@@ -0,0 +1,127 @@
+package moa.evaluation;
+
+import moa.core.Measurement;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the results of a prequential evaluation in growable primitive arrays.
+ * The windowed results are stored row by row in a single array, so there is no object per window.
+ * The windowed measurements, the tree revisions and the leaf counts are stored separately,
+ * so each of them may be added by a different thread.
+ */
+public class PrequentialResultColumns implements PrequentialResultSink {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int numColumns = -1;
+    private int numWindows = 0;
+    private double[] windowedValues = new double[0];
+
+    private int numTreeRevisions = 0;
+    private int[] treeRevisionIndices = new int[INITIAL_CAPACITY];
+
+    private int numLeafCounts = 0;
+    private int[] numberOfLeaves = new int[INITIAL_CAPACITY];
+
+    private double[] cumulativeResults = null;
+
+    @Override
+    public void addWindow(long instancesProcessed, Measurement[] windowedMeasurements, boolean performedTreeRevision, int numberOfLeaves) {
+        if (windowedMeasurements != null)
+            addWindowedMeasurements(windowedMeasurements);
+        if (performedTreeRevision)
+            addTreeRevision(instancesProcessed);
+        if (numberOfLeaves != NOT_RECORDED)
+            addNumberOfLeaves(numberOfLeaves);
+    }
+
+    /**
+     * Adds the measurements of the next window
+     */
+    public void addWindowedMeasurements(Measurement[] windowedMeasurements) {
+        if (numColumns == -1) {
+            numColumns = windowedMeasurements.length;
+            windowedValues = new double[INITIAL_CAPACITY * numColumns];
+        }
+        if (windowedMeasurements.length != numColumns)
+            throw new IllegalArgumentException("Expected " + numColumns + " measurements but got " + windowedMeasurements.length);
+        if ((numWindows + 1) * numColumns > windowedValues.length)
+            windowedValues = Arrays.copyOf(windowedValues, 2 * windowedValues.length);
+        int offset = numWindows * numColumns;
+        for (int i = 0; i < numColumns; i++)
+            windowedValues[offset + i] = windowedMeasurements[i].getValue();
+        numWindows++;
+    }
+
+    /**
+     * @param instancesProcessed the number of instances processed when the tree was revised
+     */
+    public void addTreeRevision(long instancesProcessed) {
+        if (numTreeRevisions == treeRevisionIndices.length)
+            treeRevisionIndices = Arrays.copyOf(treeRevisionIndices, 2 * treeRevisionIndices.length);
+        treeRevisionIndices[numTreeRevisions++] = (int) instancesProcessed;
+    }
+
+    public void addNumberOfLeaves(int numberOfLeaves) {
+        if (numLeafCounts == this.numberOfLeaves.length)
+            this.numberOfLeaves = Arrays.copyOf(this.numberOfLeaves, 2 * this.numberOfLeaves.length);
+        this.numberOfLeaves[numLeafCounts++] = numberOfLeaves;
+    }
+
+    @Override
+    public void finish(Measurement[] cumulativeMeasurements) {
+        if (cumulativeMeasurements == null)
+            return;
+        cumulativeResults = new double[cumulativeMeasurements.length];
+        for (int i = 0; i < cumulativeResults.length; i++)
+            cumulativeResults[i] = cumulativeMeasurements[i].getValue();
+    }
+
+    public int getNumWindows() {
+        return numWindows;
+    }
+
+    public int getNumColumns() {
+        return Math.max(numColumns, 0);
+    }
+
+    public double getValue(int window, int column) {
+        if (window >= numWindows || column >= numColumns)
+            throw new IndexOutOfBoundsException("window " + window + ", column " + column);
+        return windowedValues[window * numColumns + column];
+    }
+
+    /**
+     * @param window the index of the window
+     * @return the values of all measurements of the window
+     */
+    public double[] getWindow(int window) {
+        if (window >= numWindows)
+            throw new IndexOutOfBoundsException("window " + window);
+        return Arrays.copyOfRange(windowedValues, window * numColumns, (window + 1) * numColumns);
+    }
+
+    /**
+     * @param column the index of the measurement
+     * @return the values of the measurement over all windows
+     */
+    public double[] getColumn(int column) {
+        double[] values = new double[numWindows];
+        for (int i = 0; i < numWindows; i++)
+            values[i] = getValue(i, column);
+        return values;
+    }
+
+    public int[] getTreeRevisionIndices() {
+        return Arrays.copyOf(treeRevisionIndices, numTreeRevisions);
+    }
+
+    public int[] getNumberOfLeaves() {
+        return Arrays.copyOf(numberOfLeaves, numLeafCounts);
+    }
+
+    public double[] getCumulativeResults() {
+        return cumulativeResults;
+    }
+}
@@ -0,0 +1,29 @@
+package moa.evaluation;
+
+import moa.core.Measurement;
+
+/**
+ * Receives the results of a prequential evaluation window by window, as soon as each window is complete.
+ * Implementations can keep the results in memory ({@link PrequentialResultColumns})
+ * or write them out so that the memory stays constant regardless of the stream length ({@link CSVPrequentialResultSink}).
+ */
+public interface PrequentialResultSink {
+
+    /** The number of leaves if it was not recorded */
+    int NOT_RECORDED = -1;
+
+    /**
+     * Called at the end of each window
+     * @param instancesProcessed the number of instances processed so far
+     * @param windowedMeasurements the measurements of the windowed evaluator, or null if there is none
+     * @param performedTreeRevision if the learner performed a tree revision since the last window
+     * @param numberOfLeaves the number of leaves of the learner, or NOT_RECORDED
+     */
+    void addWindow(long instancesProcessed, Measurement[] windowedMeasurements, boolean performedTreeRevision, int numberOfLeaves);
+
+    /**
+     * Called once after the last window
+     * @param cumulativeMeasurements the measurements of the basic evaluator, or null if there is none
+     */
+    void finish(Measurement[] cumulativeMeasurements);
+}
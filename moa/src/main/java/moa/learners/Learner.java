@@ -84,6 +84,30 @@ public interface Learner<E extends Example> extends MOAObject, OptionHandler, AW
      */
     public void trainOnInstance(E example);
 
+    /**
+     * Trains this learner incrementally using the given examples.
+     * The default implementation trains on the examples one by one.
+     *
+     * @param examples the instances to be used for training, in order
+     */
+    public default void trainOnInstances(E[] examples) {
+        for (E example : examples) {
+            trainOnInstance(example);
+        }
+    }
+
+    /**
+     * Gets whether this learner keeps references to the examples it is given after the call returns,
+     * e.g. in a window of past examples. Learners that do not can be fed from streams that reuse their examples
+     * (see {@link moa.streams.ExampleStream#setInstanceReuse(int)}).
+     * The default implementation returns true, so learners have to opt in to instance reuse.
+     *
+     * @return true if this learner keeps references to the examples
+     */
+    public default boolean retainsInstances() {
+        return true;
+    }
+
     /**
      * Predicts the class memberships for a given instance. If
      * an instance is unclassified, the returned array elements
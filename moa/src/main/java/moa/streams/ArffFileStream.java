@@ -21,22 +21,29 @@ package moa.streams;
 
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.FastArffLoader;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
 
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
+import moa.core.BlockGzipInputStream;
 import moa.core.InputStreamProgressMonitor;
 import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
+import moa.core.ReadAheadInputStream;
 import moa.options.AbstractOptionHandler;
 import moa.streams.clustering.ClusterEvent;
 import moa.streams.generators.cd.ConceptDriftGenerator;
@@ -49,7 +56,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class ArffFileStream extends AbstractOptionHandler implements
-        InstanceStream, ConceptDriftGenerator, CapabilitiesHandler {
+        InstanceStream, ConceptDriftGenerator, CapabilitiesHandler, Closeable {
 
     @Override
     public String getPurposeString() {
@@ -58,6 +65,10 @@ public class ArffFileStream extends AbstractOptionHandler implements
 
     private static final long serialVersionUID = 1L;
 
+    private static final int READ_AHEAD_CHUNK_SIZE = 1 << 16;
+
+    private static final int READ_AHEAD_CHUNKS = 16;
+
     public FileOption arffFileOption = new FileOption("arffFile", 'f',
             "ARFF file to load.", null, "arff", false);
 
@@ -79,6 +90,12 @@ public class ArffFileStream extends AbstractOptionHandler implements
 
     protected InputStreamProgressMonitor fileProgressMonitor;
 
+    protected InputStream inputStream;
+
+    protected int numValidReusedExamples;
+
+    protected transient DenseInstanceRing instanceRing;
+
     public ArffFileStream() {
     }
 
@@ -128,16 +145,22 @@ public class ArffFileStream extends AbstractOptionHandler implements
     @Override
     public void restart() {
         try {
-            if (this.fileReader != null) {
-                this.fileReader.close();
-            }
+            closeFile();
             InputStream fileStream = new FileInputStream(this.arffFileOption.getFile());
             this.fileProgressMonitor = new InputStreamProgressMonitor(
                     fileStream);
-            this.fileReader = new BufferedReader(new InputStreamReader(
-                    this.fileProgressMonitor));
+            // the progress is monitored on the compressed bytes
+            this.inputStream = openDecompressedStream(this.arffFileOption.getFile(), this.fileProgressMonitor);
             int classIndex = this.classIndexOption.getValue();
-            this.instances = new Instances(this.fileReader, 1, classIndex);
+            if (FastArffLoader.supportsCharset(Charset.defaultCharset())) {
+                // tokenize the bytes directly, the instances read from the stream themselves
+                this.fileReader = null;
+                this.instances = new Instances(this.inputStream, classIndex);
+            } else {
+                this.fileReader = new BufferedReader(new InputStreamReader(
+                        this.inputStream));
+                this.instances = new Instances(this.fileReader, 1, classIndex);
+            }
             if (classIndex < 0) {
 		this.instances.setClassIndex(this.instances.numAttributes() - 1);
             } else if (this.classIndexOption.getValue() > 0) {
@@ -145,25 +168,47 @@ public class ArffFileStream extends AbstractOptionHandler implements
 				}
             this.numInstancesRead = 0;
             this.lastInstanceRead = null;
+            setInstanceReuse(this.numValidReusedExamples);
             this.hitEndOfFile = !readNextInstanceFromFile();
         } catch (IOException ioe) {
+            try {
+                closeFile();
+            } catch (IOException e) {
+                ioe.addSuppressed(e);
+            }
             throw new RuntimeException("ArffFileStream restart failed.", ioe);
         }
         this.clusterEvents = new ArrayList<ClusterEvent>();
     }
 
+    @Override
+    public boolean setInstanceReuse(int numValidExamples) {
+        this.numValidReusedExamples = numValidExamples;
+        // one more example, because the stream reads one example ahead
+        this.instanceRing = numValidExamples > 0 && this.instances != null
+                ? new DenseInstanceRing(numValidExamples + 1, getHeader()) : null;
+        return true;
+    }
+
+    @Override
+    public int getInstanceReuse() {
+        return this.numValidReusedExamples;
+    }
+
     protected boolean readNextInstanceFromFile() {
         try {
+            if (this.instanceRing != null && this.instances.readDenseInstance(this.instanceRing.nextValues())) {
+                this.lastInstanceRead = this.instanceRing.currentExample(1.0);
+                this.numInstancesRead++;
+                return true;
+            }
             if (this.instances.readInstance(this.fileReader)) {
                 this.lastInstanceRead = new InstanceExample(this.instances.instance(0));
                 this.instances.delete(); // keep instances clean
                 this.numInstancesRead++;
                 return true;
             }
-            if (this.fileReader != null) {
-                this.fileReader.close();
-                this.fileReader = null;
-            }
+            closeFile();
             return false;
         } catch (IOException ioe) {
             throw new RuntimeException(
@@ -171,6 +216,51 @@ public class ArffFileStream extends AbstractOptionHandler implements
         }
     }
 
+    /**
+     * Decompresses gzip files in the background while the instances are parsed (if there is more than one processor).
+     * Block gzip files (as written by bgzip) are decompressed by several threads.
+     *
+     * @param file the file to read
+     * @param fileStream the stream of the bytes of the file
+     * @return the stream of the decompressed bytes, or fileStream if the file is not compressed
+     */
+    protected InputStream openDecompressedStream(File file, InputStream fileStream) throws IOException {
+        byte[] magic = new byte[32];
+        int length = 0;
+        try (InputStream peekStream = new FileInputStream(file)) {
+            for (int n; length < magic.length && (n = peekStream.read(magic, length, magic.length - length)) >= 0; ) {
+                length += n;
+            }
+        }
+        if (length < 2 || (magic[0] & 0xFF) != 0x1f || (magic[1] & 0xFF) != 0x8b)
+            return fileStream;
+        int numProcessors = Runtime.getRuntime().availableProcessors();
+        if (BlockGzipInputStream.isBlockGzip(magic, length))
+            return new BlockGzipInputStream(fileStream, numProcessors);
+        InputStream gzipStream = new GZIPInputStream(fileStream, READ_AHEAD_CHUNK_SIZE);
+        if (numProcessors == 1)  // reading ahead would only add context switches
+            return gzipStream;
+        return new ReadAheadInputStream(gzipStream, READ_AHEAD_CHUNK_SIZE, READ_AHEAD_CHUNKS);
+    }
+
+    /**
+     * Closes the file (and stops the threads that decompress it). The stream can be used again after a restart.
+     */
+    @Override
+    public void close() throws IOException {
+        closeFile();
+    }
+
+    protected void closeFile() throws IOException {
+        if (this.fileReader != null) {
+            this.fileReader.close();
+            this.fileReader = null;
+        } else if (this.inputStream != null) {
+            this.inputStream.close();
+        }
+        this.inputStream = null;
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
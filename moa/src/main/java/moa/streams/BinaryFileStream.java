@@ -0,0 +1,484 @@
+package moa.streams;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stream reader of binary instance files written by {@link moa.tasks.WriteStreamToBinaryFile}.
+ * <p>
+ *     The file is memory-mapped and the values are copied from the mapping without any parsing,
+ *     so replaying a stream is much faster than reading it from an ARFF file.
+ *     Restarting the stream only resets the read position. Closing the stream closes the file,
+ *     which is opened again on the next restart.
+ * </p>
+ * <p>
+ *     The format (little endian) starts with a preamble of 32 bytes: a magic number, the version,
+ *     the layout of the rows, a reserved int, the number of instances and the offset of the header.
+ *     The rows follow the preamble. In the dense layout, each row is the weight followed by one double per attribute,
+ *     so all rows have the same width. In the sparse layout, each row is the weight, the number of values,
+ *     the indices of the values (ints) and the values (doubles). The header is written after the rows,
+ *     so that nominal labels that are added while the stream is written are included: the class index,
+ *     the relation name, and the name, type and labels of each attribute. Date attributes are stored as numeric attributes.
+ * </p>
+ */
+public class BinaryFileStream extends AbstractOptionHandler implements InstanceStream, Closeable {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream read from a binary instance file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    static final int MAGIC = 0x42414F4D;  // "MOAB"
+    public static final int VERSION = 1;
+    static final int DENSE_LAYOUT = 0;
+    static final int SPARSE_LAYOUT = 1;
+    static final int PREAMBLE_SIZE = 32;
+
+    private static final byte NUMERIC_ATTRIBUTE = 0;
+    private static final byte NOMINAL_ATTRIBUTE = 1;
+
+    // mappings are limited to 2 GB, larger files are mapped in windows
+    private static final long MAX_MAPPING_SIZE = 1L << 30;
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Binary instance file to load.", null, "bin", false);
+
+    public IntOption classIndexOption = new IntOption(
+            "classIndex",
+            'c',
+            "Class index of data. 0 for the class index stored in the file or -1 for last attribute.",
+            0, -1, Integer.MAX_VALUE);
+
+    protected Instances instances;
+
+    protected transient FileChannel channel;
+
+    protected transient MappedByteBuffer mapping;
+
+    protected transient DoubleBuffer mappedDoubles;
+
+    protected long mappingStart;
+
+    protected long fileSize;
+
+    protected int layout;
+
+    protected long numInstances;
+
+    protected long dataEnd;
+
+    protected long position;
+
+    protected long numInstancesRead;
+
+    protected int numValidReusedExamples;
+
+    protected transient DenseInstanceRing instanceRing;
+
+    public BinaryFileStream() {
+    }
+
+    public BinaryFileStream(String binaryFileName, int classIndex) {
+        this.binaryFileOption.setValue(binaryFileName);
+        this.classIndexOption.setValue(classIndex);
+        restart();
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        restart();
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return new InstancesHeader(this.instances);
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.numInstances - this.numInstancesRead;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.numInstancesRead < this.numInstances;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        Instance instance;
+        try {
+            if (this.instanceRing != null) {
+                this.numInstancesRead++;
+                return readDenseInstance(this.instanceRing);
+            }
+            instance = this.layout == DENSE_LAYOUT ? readDenseInstance() : readSparseInstance();
+        } catch (IOException ioe) {
+            throw new RuntimeException(
+                    "BinaryFileStream failed to read instance from file.", ioe);
+        }
+        instance.setDataset(this.instances);
+        this.numInstancesRead++;
+        return new InstanceExample(instance);
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        try {
+            if (this.channel == null) {
+                open();
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("BinaryFileStream restart failed.", ioe);
+        }
+        this.position = PREAMBLE_SIZE;
+        this.numInstancesRead = 0;
+        setInstanceReuse(this.numValidReusedExamples);
+    }
+
+    /**
+     * Instances are only reused in files with the dense layout
+     */
+    @Override
+    public boolean setInstanceReuse(int numValidExamples) {
+        this.numValidReusedExamples = numValidExamples;
+        boolean reuse = numValidExamples > 0 && this.channel != null && this.layout == DENSE_LAYOUT;
+        this.instanceRing = reuse ? new DenseInstanceRing(numValidExamples, getHeader()) : null;
+        return reuse;
+    }
+
+    @Override
+    public int getInstanceReuse() {
+        return this.numValidReusedExamples;
+    }
+
+    /**
+     * Closes the file. The stream can be used again after a restart.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.channel == null)
+            return;
+        this.mapping = null;
+        this.mappedDoubles = null;
+        try {
+            this.channel.close();
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    private void open() throws IOException {
+        this.channel = new RandomAccessFile(this.binaryFileOption.getFile(), "r").getChannel();
+        try {
+            readPreambleAndHeader();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void readPreambleAndHeader() throws IOException {
+        this.fileSize = this.channel.size();
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(preamble, 0);
+        if (preamble.getInt(0) != MAGIC)
+            throw new IOException(this.binaryFileOption.getFile() + " is not a binary instance file");
+        int version = preamble.getInt(4);
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported binary instance file version " + version);
+        this.layout = preamble.getInt(8);
+        this.numInstances = preamble.getLong(16);
+        this.dataEnd = preamble.getLong(24);
+
+        ByteBuffer header = ByteBuffer.allocate((int) (this.fileSize - this.dataEnd)).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, this.dataEnd);
+        this.instances = readHeader(header);
+        int classIndex = this.classIndexOption.getValue();
+        if (classIndex < 0) {
+            this.instances.setClassIndex(this.instances.numAttributes() - 1);
+        } else if (classIndex > 0) {
+            this.instances.setClassIndex(classIndex - 1);
+        }
+        map(PREAMBLE_SIZE, 0);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of binary instance file");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Makes sure the bytes [position, position + length) are mapped
+     */
+    private void ensureMapped(long position, int length) throws IOException {
+        if (position + length > this.dataEnd)
+            throw new IOException("Unexpected end of binary instance data");
+        if (position < this.mappingStart || position + length > this.mappingStart + this.mapping.capacity())
+            map(position, length);
+    }
+
+    private void map(long position, int minLength) throws IOException {
+        long size = Math.max(minLength, Math.min(MAX_MAPPING_SIZE, this.dataEnd - position));
+        this.mapping = this.channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        this.mapping.order(ByteOrder.LITTLE_ENDIAN);
+        this.mappingStart = position;
+        // dense rows start at multiples of 8 bytes from the start of the mapping
+        this.mappedDoubles = this.layout == DENSE_LAYOUT ? this.mapping.asDoubleBuffer() : null;
+    }
+
+    private Instance readDenseInstance() throws IOException {
+        double[] values = new double[this.instances.numAttributes()];
+        double weight = readDenseRow(values);
+        return new DenseInstance(weight, values);
+    }
+
+    private InstanceExample readDenseInstance(DenseInstanceRing ring) throws IOException {
+        double weight = readDenseRow(ring.nextValues());
+        return ring.currentExample(weight);
+    }
+
+    /**
+     * Reads the values of the next dense row into the provided array
+     *
+     * @return the weight of the row
+     */
+    private double readDenseRow(double[] values) throws IOException {
+        int rowSize = 8 * (values.length + 1);
+        ensureMapped(this.position, rowSize);
+        int offset = (int) ((this.position - this.mappingStart) >> 3);
+        double weight = this.mappedDoubles.get(offset);
+        this.mappedDoubles.position(offset + 1);
+        this.mappedDoubles.get(values);
+        this.position += rowSize;
+        return weight;
+    }
+
+    private Instance readSparseInstance() throws IOException {
+        ensureMapped(this.position, 12);
+        int offset = (int) (this.position - this.mappingStart);
+        int numValues = this.mapping.getInt(offset + 8);
+        int rowSize = 12 + 12 * numValues;
+        ensureMapped(this.position, rowSize);
+        offset = (int) (this.position - this.mappingStart);
+        double weight = this.mapping.getDouble(offset);
+        int[] indices = new int[numValues];
+        double[] values = new double[numValues];
+        this.mapping.position(offset + 12);
+        this.mapping.asIntBuffer().get(indices);
+        this.mapping.position(offset + 12 + 4 * numValues);
+        this.mapping.asDoubleBuffer().get(values);
+        this.position += rowSize;
+        return new SparseInstance(weight, values, indices, this.instances.numAttributes());
+    }
+
+    private static Instances readHeader(ByteBuffer buffer) {
+        int classIndex = buffer.getInt();
+        String relation = readString(buffer);
+        int numAttributes = buffer.getInt();
+        List<Attribute> attributes = new ArrayList<>(numAttributes);
+        for (int i = 0; i < numAttributes; i++) {
+            String name = readString(buffer);
+            if (buffer.get() == NOMINAL_ATTRIBUTE) {
+                int numLabels = buffer.getInt();
+                List<String> labels = new ArrayList<>(numLabels);
+                for (int j = 0; j < numLabels; j++) {
+                    labels.add(readString(buffer));
+                }
+                attributes.add(new Attribute(name, labels));
+            } else {
+                attributes.add(new Attribute(name));
+            }
+        }
+        Instances instances = new Instances(relation, attributes, 0);
+        if (classIndex >= 0)
+            instances.setClassIndex(classIndex);
+        return instances;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+
+    /**
+     * Writes instances in the format read by {@link BinaryFileStream}.
+     * The layout is chosen by the first instance: sparse rows if it stores fewer values than attributes, else dense rows.
+     */
+    public static class Writer implements Closeable {
+
+        private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        // the dataset of the last instance, whose attributes are written when the writer is closed
+        private Instances header;
+
+        private int layout = -1;
+
+        private long numInstances;
+
+        private long position = PREAMBLE_SIZE;
+
+        /**
+         * @param file the file to write to
+         * @param header the header of the instances, used if no instance is written
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(File file, InstancesHeader header) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(0);
+            } catch (IOException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+            this.channel = randomAccessFile.getChannel();
+            this.header = header;
+        }
+
+        public void write(Instance instance) throws IOException {
+            if (this.layout < 0)
+                this.layout = instance instanceof SparseInstance || instance.numValues() < instance.numAttributes()
+                        ? SPARSE_LAYOUT : DENSE_LAYOUT;
+            if (instance.dataset() != null)
+                this.header = instance.dataset();  // nominal labels might be added until the writer is closed
+            if (this.layout == DENSE_LAYOUT) {
+                int numAttributes = instance.numAttributes();
+                ensureCapacity(8 * (numAttributes + 1));
+                this.buffer.putDouble(instance.weight());
+                for (int i = 0; i < numAttributes; i++) {
+                    this.buffer.putDouble(instance.value(i));
+                }
+            } else {
+                int numValues = instance.numValues();
+                ensureCapacity(12 + 12 * numValues);
+                this.buffer.putDouble(instance.weight());
+                this.buffer.putInt(numValues);
+                for (int i = 0; i < numValues; i++) {
+                    this.buffer.putInt(instance.index(i));
+                }
+                for (int i = 0; i < numValues; i++) {
+                    this.buffer.putDouble(instance.valueSparse(i));
+                }
+            }
+            this.numInstances++;
+        }
+
+        private void ensureCapacity(int length) throws IOException {
+            if (this.buffer.remaining() < length)
+                flush();
+            if (this.buffer.capacity() < length) {  // a row that is larger than the buffer
+                int capacity = Integer.highestOneBit(length - 1) << 1;
+                this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        private void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.position += this.channel.write(this.buffer, this.position);
+            }
+            this.buffer.clear();
+        }
+
+        private void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(4);
+            this.buffer.putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensureCapacity(1);
+                int length = Math.min(this.buffer.remaining(), bytes.length - offset);
+                this.buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Writes the header and the preamble and closes the file
+         */
+        @Override
+        public void close() throws IOException {
+            if (!this.channel.isOpen())
+                return;
+            try {
+                flush();
+                long dataEnd = this.position;
+                ensureCapacity(8);
+                this.buffer.putInt(this.header.classIndex());
+                putString(this.header.getRelationName());
+                this.buffer.putInt(this.header.numAttributes());
+                for (int i = 0; i < this.header.numAttributes(); i++) {
+                    Attribute attribute = this.header.attribute(i);
+                    putString(attribute.name());
+                    ensureCapacity(5);
+                    if (attribute.isNominal()) {
+                        this.buffer.put(NOMINAL_ATTRIBUTE);
+                        this.buffer.putInt(attribute.numValues());
+                        for (int j = 0; j < attribute.numValues(); j++) {
+                            putString(attribute.value(j));
+                        }
+                    } else {
+                        this.buffer.put(NUMERIC_ATTRIBUTE);
+                    }
+                }
+                flush();
+
+                this.buffer.putInt(MAGIC);
+                this.buffer.putInt(VERSION);
+                this.buffer.putInt(this.layout < 0 ? DENSE_LAYOUT : this.layout);
+                this.buffer.putInt(0);
+                this.buffer.putLong(this.numInstances);
+                this.buffer.putLong(dataEnd);
+                this.buffer.flip();
+                for (long offset = 0; this.buffer.hasRemaining(); ) {
+                    offset += this.channel.write(this.buffer, offset);
+                }
+                this.buffer.clear();
+            } finally {
+                this.channel.close();
+            }
+        }
+    }
+}
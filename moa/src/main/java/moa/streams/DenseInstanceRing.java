@@ -0,0 +1,60 @@
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.core.InstanceExample;
+
+/**
+ * Ring of dense examples that a stream recycles when instance reuse is enabled
+ * (see {@link ExampleStream#setInstanceReuse(int)}).
+ * The stream writes the values of the next example into the array of the next slot instead of creating a new example.
+ * An example is overwritten after size further examples.
+ */
+public class DenseInstanceRing {
+
+    private final double[][] values;
+
+    private final InstanceExample[] examples;
+
+    private int current = -1;
+
+    /**
+     * @param size the number of examples in the ring
+     * @param header the header of the examples
+     */
+    public DenseInstanceRing(int size, InstancesHeader header) {
+        this.values = new double[size][];
+        this.examples = new InstanceExample[size];
+        for (int i = 0; i < size; i++) {
+            this.values[i] = new double[header.numAttributes()];
+            Instance instance = new DenseInstance(1.0, this.values[i]);
+            instance.setDataset(header);
+            this.examples[i] = new InstanceExample(instance);
+        }
+    }
+
+    public int size() {
+        return this.values.length;
+    }
+
+    /**
+     * Moves to the next slot of the ring
+     *
+     * @return the values of the example of the slot, to be overwritten by the stream
+     */
+    public double[] nextValues() {
+        this.current = (this.current + 1) % this.values.length;
+        return this.values[this.current];
+    }
+
+    /**
+     * @param weight the weight of the example
+     * @return the example of the slot whose values were returned by the last call of nextValues
+     */
+    public InstanceExample currentExample(double weight) {
+        InstanceExample example = this.examples[this.current];
+        example.getData().setWeight(weight);
+        return example;
+    }
+}
@@ -81,6 +81,27 @@ public interface ExampleStream<E extends Example> extends MOAObject,
      */
     public void restart();
 
+    /**
+     * Allows this stream to recycle the examples it returns instead of creating new ones.
+     * With reuse enabled, an example returned by nextInstance (including its data) is only valid
+     * until numValidExamples further examples are taken from the stream, after which it may be overwritten.
+     * Only consumers that do not keep references to the examples (see {@link moa.learners.Learner#retainsInstances()})
+     * should enable reuse. Streams that do not support reuse keep creating new examples.
+     *
+     * @param numValidExamples the number of examples that stay valid, or 0 to disable reuse
+     * @return true if this stream may reuse its examples from now on
+     */
+    default boolean setInstanceReuse(int numValidExamples) {
+        return false;
+    }
+
+    /**
+     * @return the number of examples last passed to {@link #setInstanceReuse(int)}, or 0 if reuse was not enabled
+     */
+    default int getInstanceReuse() {
+        return 0;
+    }
+
     default ImmutableCapabilities defineImmutableCapabilities() {
         // We are restricting streams based on view mode
         return new ImmutableCapabilities(Capability.VIEW_STANDARD);
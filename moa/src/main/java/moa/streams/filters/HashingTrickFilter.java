@@ -1,6 +1,7 @@
 
 
 package moa.streams.filters;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.google.common.hash.Hashing;
 import com.google.common.hash.HashFunction;
@@ -9,13 +10,18 @@ import com.yahoo.labs.samoa.instances.DenseInstance;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
 import moa.core.FastVector;
 import moa.core.InstanceExample;
 import moa.streams.InstanceStream;
 
+import java.util.Arrays;
+
 /**
  *    Filter to perform feature hashing to reduce the number of attributes by applying
  *    a hash function to features.
+ *    Only the non-zero values of the input instances are visited, and the bucket of each input attribute
+ *    is computed once, so sparse input with many attributes is cheap to filter.
  *
  *   @author Maroua Bahri
  */
@@ -24,19 +30,35 @@ public class HashingTrickFilter extends AbstractStreamFilter {
 
     private static final long serialVersionUID = 1L;
 
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
     public IntOption dim = new IntOption("OutputFeatureDimension", 'd',
             "the target feature dimension.", 10);
 
+    public FlagOption sparseOutputOption = new FlagOption("sparseOutput", 's',
+            "Outputs sparse instances, which is faster if the target feature dimension is large.");
+
     protected InstancesHeader streamHeader;
 
     protected FastVector attributes;
 
+    // bucket of each input attribute, plus one and negated if the hash is negative (0 if not computed yet)
+    protected transient int[] signedBuckets;
+
+    protected transient int signedBucketsDimension;
+
+    // buckets of the instance that is transformed to a sparse instance, and the indices of the non-zero buckets
+    protected transient double[] bucketValues;
+
+    protected transient int[] usedBuckets;
+
     @Override
     public String getPurposeString() { return "Reduces the number of input features using a hash function.";  }
 
     @Override
     protected void restartImpl() {
         this.streamHeader = null;
+        this.signedBuckets = null;
     }
 
     @Override
@@ -62,11 +84,80 @@ public class HashingTrickFilter extends AbstractStreamFilter {
         }
 
 
-        double [] hashVal = hashVector(sparseInstance,this.dim.getValue(), Hashing.murmur3_128());
+        if (this.sparseOutputOption.isSet())
+            return new InstanceExample(sparseTransformedInstance(sparseInstance));
+
+        double [] hashVal = hashVector(sparseInstance, this.dim.getValue());
 
         return new InstanceExample(transformedInstance(sparseInstance, hashVal));
     }
 
+    /**
+     * Hashes the instance into a sparse instance that only stores the non-zero buckets and the class
+     */
+    public SparseInstance sparseTransformedInstance(Instance instance) {
+        int n = this.dim.getValue();
+        if (this.bucketValues == null || this.bucketValues.length != n) {
+            this.bucketValues = new double[n];
+            this.usedBuckets = new int[16];
+        }
+        int numUsedBuckets = 0;
+        int classAttribute = instance.numAttributes() - 1;
+        for (int k = 0; k < instance.numValues(); k++) {
+            int i = instance.index(k);
+            if (i < classAttribute && Math.abs(instance.valueSparse(k)) > Double.MIN_NORMAL) {
+                int signedBucket = signedBucket(i, n);
+                int bucket = Math.abs(signedBucket) - 1;
+                if (this.bucketValues[bucket] == 0d) {
+                    if (numUsedBuckets == this.usedBuckets.length)
+                        this.usedBuckets = Arrays.copyOf(this.usedBuckets, 2 * numUsedBuckets);
+                    this.usedBuckets[numUsedBuckets++] = bucket;  // might be added again if the values cancel out
+                }
+                this.bucketValues[bucket] += (signedBucket < 0 ? -1d : 1d);
+            }
+        }
+        Arrays.sort(this.usedBuckets, 0, numUsedBuckets);
+        int[] indices = new int[numUsedBuckets + 1];
+        double[] values = new double[numUsedBuckets + 1];
+        int numValues = 0;
+        for (int k = 0; k < numUsedBuckets; k++) {
+            int bucket = this.usedBuckets[k];
+            if (this.bucketValues[bucket] != 0d && (numValues == 0 || indices[numValues - 1] != bucket)) {
+                indices[numValues] = bucket;
+                values[numValues++] = this.bucketValues[bucket];
+            }
+            this.bucketValues[bucket] = 0d;
+        }
+        indices[numValues] = n;
+        values[numValues++] = instance.classValue();
+        SparseInstance newInstance = new SparseInstance(1.0, Arrays.copyOf(values, numValues),
+                Arrays.copyOf(indices, numValues), n + 1);
+        newInstance.setDataset(this.streamHeader);
+        return newInstance;
+    }
+
+    /**
+     * @return the bucket of the input attribute plus one, negated if its hash is negative
+     */
+    private int signedBucket(int attributeIndex, int n) {
+        if (this.signedBucketsDimension != n) {
+            this.signedBuckets = null;
+            this.signedBucketsDimension = n;
+        }
+        if (this.signedBuckets == null || this.signedBuckets.length <= attributeIndex)
+            this.signedBuckets = this.signedBuckets == null
+                    ? new int[attributeIndex + 1]
+                    : Arrays.copyOf(this.signedBuckets, Math.max(attributeIndex + 1, 2 * this.signedBuckets.length));
+        int signedBucket = this.signedBuckets[attributeIndex];
+        if (signedBucket == 0) {
+            int hash = HASH_FUNCTION.hashInt(attributeIndex).asInt();
+            int bucket = Math.abs(hash) % n;
+            signedBucket = hash < 0 ? -(bucket + 1) : bucket + 1;
+            this.signedBuckets[attributeIndex] = signedBucket;
+        }
+        return signedBucket;
+    }
+
 
 
     public DenseInstance transformedInstance(Instance sparseInst, double [] hashVal) {
@@ -90,15 +181,30 @@ public class HashingTrickFilter extends AbstractStreamFilter {
     }
 
 
+    /**
+     * Same as hashVector with murmur3, but the buckets of the attributes are cached
+     */
+    public double[] hashVector(Instance instance, int n) {
+        double [] denseValues = new double [n];
+        int classAttribute = instance.numAttributes() - 1;
+        for (int k = 0; k < instance.numValues(); k++) {
+            int i = instance.index(k);
+            if (i < classAttribute && Math.abs(instance.valueSparse(k)) > Double.MIN_NORMAL) {
+                int signedBucket = signedBucket(i, n);
+                denseValues[Math.abs(signedBucket) - 1] += (signedBucket < 0 ? -1d : 1d);
+            }
+        }
+        return denseValues;
+    }
+
     public  double[] hashVector(Instance instance, int n, HashFunction hashFunction) {
 
         double [] denseValues = new double [n];
-        for (int i = 0 ; i < n ; i++) {
-            denseValues[i] = 0d;
-        }
-        for (int i = 0; i < instance.numAttributes()-1 ; i++){
-                double diff = Math.abs(instance.value(i));
-                if( diff  > Double.MIN_NORMAL) {
+        int classAttribute = instance.numAttributes() - 1;
+        for (int k = 0; k < instance.numValues(); k++) {
+                int i = instance.index(k);
+                double diff = Math.abs(instance.valueSparse(k));
+                if( i < classAttribute && diff  > Double.MIN_NORMAL) {
                     int  hash = hashFunction.hashInt(i).asInt();
                     int bucket = Math.abs(hash) % n;
                     denseValues[bucket] += (hash < 0 ? -1d : 1d);
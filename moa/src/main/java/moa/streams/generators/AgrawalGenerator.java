@@ -38,6 +38,7 @@ import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import moa.streams.DenseInstanceRing;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 
@@ -278,6 +279,10 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
 
     protected boolean nextClassShouldBeZero;
 
+    protected int numValidReusedExamples;
+
+    protected transient DenseInstanceRing instanceRing;
+
     @Override
     protected void prepareForUseImpl(TaskMonitor monitor,
             ObjectRepository repository) {
@@ -312,6 +317,7 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
                 getCLICreationString(InstanceStream.class), attributes, 0));
         this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
         restart();
+        setInstanceReuse(this.numValidReusedExamples);  // the header is new
     }
 
     @Override
@@ -382,7 +388,15 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
         }
         // construct instance
         InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
+        InstanceExample example = null;
+        Instance inst;
+        if (this.instanceRing != null) {
+            this.instanceRing.nextValues();
+            example = this.instanceRing.currentExample(1.0);
+            inst = example.getData();
+        } else {
+            inst = new DenseInstance(header.numAttributes());
+        }
         inst.setValue(0, salary);
         inst.setValue(1, commission);
         inst.setValue(2, age);
@@ -394,7 +408,7 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
         inst.setValue(8, loan);
         inst.setDataset(header);
         inst.setClassValue(group);
-        return new InstanceExample(inst);
+        return example != null ? example : new InstanceExample(inst);
     }
 
     protected double perturbValue(double val, double min, double max) {
@@ -419,6 +433,20 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
         this.nextClassShouldBeZero = false;
     }
 
+    @Override
+    public boolean setInstanceReuse(int numValidExamples) {
+        this.numValidReusedExamples = numValidExamples;
+        // before prepareForUse, there is no header yet and the ring is created by prepareForUse
+        this.instanceRing = numValidExamples > 0 && getHeader() != null
+                ? new DenseInstanceRing(numValidExamples, getHeader()) : null;
+        return true;
+    }
+
+    @Override
+    public int getInstanceReuse() {
+        return this.numValidReusedExamples;
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
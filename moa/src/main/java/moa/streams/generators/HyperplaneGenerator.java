@@ -29,6 +29,7 @@ import moa.core.FastVector;
 import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
+import moa.streams.DenseInstanceRing;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 import com.yahoo.labs.samoa.instances.Attribute;
@@ -79,6 +80,10 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
 
     protected Random instanceRandom;
 
+    protected int numValidReusedExamples;
+
+    protected transient DenseInstanceRing instanceRing;
+
     protected double[] weights;
 
     protected int[] sigma;
@@ -91,6 +96,7 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
         monitor.setCurrentActivity("Preparing hyperplane...", -1.0);
         generateHeader();
         restart();
+        setInstanceReuse(this.numValidReusedExamples);  // the header is new
     }
 
     protected void generateHeader() {
@@ -133,7 +139,7 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
     public InstanceExample nextInstance() {
 
         int numAtts = this.numAttsOption.getValue();
-        double[] attVals = new double[numAtts + 1];
+        double[] attVals = this.instanceRing != null ? this.instanceRing.nextValues() : new double[numAtts + 1];
         double sum = 0.0;
         double sumWeights = 0.0;
         for (int i = 0; i < numAtts; i++) {
@@ -152,6 +158,12 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
             classLabel = (classLabel == 0 ? 1 : 0);
         }
 
+        if (this.instanceRing != null) {
+            InstanceExample example = this.instanceRing.currentExample(1.0);
+            example.getData().setClassValue(classLabel);
+            addDrift();
+            return example;
+        }
         Instance inst = new DenseInstance(1.0, attVals);
         inst.setDataset(getHeader());
         inst.setClassValue(classLabel);
@@ -180,6 +192,20 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
         }
     }
 
+    @Override
+    public boolean setInstanceReuse(int numValidExamples) {
+        this.numValidReusedExamples = numValidExamples;
+        // before prepareForUse, there is no header yet and the ring is created by prepareForUse
+        this.instanceRing = numValidExamples > 0 && getHeader() != null
+                ? new DenseInstanceRing(numValidExamples, getHeader()) : null;
+        return true;
+    }
+
+    @Override
+    public int getInstanceReuse() {
+        return this.numValidReusedExamples;
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
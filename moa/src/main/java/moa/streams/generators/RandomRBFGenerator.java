@@ -37,6 +37,7 @@ import moa.core.MiscUtils;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.IntOption;
+import moa.streams.DenseInstanceRing;
 import moa.streams.InstanceStream;
 import moa.tasks.TaskMonitor;
 
@@ -91,6 +92,10 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
 
     protected Random instanceRandom;
 
+    protected int numValidReusedExamples;
+
+    protected transient DenseInstanceRing instanceRing;
+
     @Override
     public void prepareForUseImpl(TaskMonitor monitor,
             ObjectRepository repository) {
@@ -98,6 +103,7 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
         generateHeader();
         generateCentroids();
         restart();
+        setInstanceReuse(this.numValidReusedExamples);  // the header is new
     }
 
     @Override
@@ -125,12 +131,26 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
     }
 
+    @Override
+    public boolean setInstanceReuse(int numValidExamples) {
+        this.numValidReusedExamples = numValidExamples;
+        // before prepareForUse, there is no header yet and the ring is created by prepareForUse
+        this.instanceRing = numValidExamples > 0 && getHeader() != null
+                ? new DenseInstanceRing(numValidExamples, getHeader()) : null;
+        return true;
+    }
+
+    @Override
+    public int getInstanceReuse() {
+        return this.numValidReusedExamples;
+    }
+
     @Override
     public InstanceExample nextInstance() {
         Centroid centroid = this.centroids[MiscUtils.chooseRandomIndexBasedOnWeights(this.centroidWeights,
                 this.instanceRandom)];
         int numAtts = this.numAttsOption.getValue();
-        double[] attVals = new double[numAtts + 1];
+        double[] attVals = this.instanceRing != null ? this.instanceRing.nextValues() : new double[numAtts + 1];
         for (int i = 0; i < numAtts; i++) {
             attVals[i] = (this.instanceRandom.nextDouble() * 2.0) - 1.0;
         }
@@ -145,6 +165,11 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
         for (int i = 0; i < numAtts; i++) {
             attVals[i] = centroid.centre[i] + attVals[i] * scale;
         }
+        if (this.instanceRing != null) {
+            InstanceExample example = this.instanceRing.currentExample(1.0);
+            example.getData().setClassValue(centroid.classLabel);
+            return example;
+        }
         Instance inst = new DenseInstance(1.0, attVals);
         inst.setDataset(getHeader());
         inst.setClassValue(centroid.classLabel);
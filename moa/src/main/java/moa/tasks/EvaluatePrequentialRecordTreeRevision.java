@@ -29,6 +29,9 @@ import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.trees.plastic_util.PerformsTreeRevision;
+import moa.classifiers.trees.plastic_util.ProfilesRestructuring;
+import moa.classifiers.trees.plastic_util.RestructuringEvent;
+import moa.classifiers.trees.plastic_util.RestructuringProfiler;
 import moa.core.*;
 import moa.evaluation.*;
 import moa.evaluation.preview.LearningCurve;
@@ -94,6 +97,10 @@ public class EvaluatePrequentialRecordTreeRevision extends ClassificationMainTas
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);
 
+    public FileOption restructuringLogFileOption = new FileOption("restructuringLogFile", 'r',
+            "File to append the cost of each restructuring to (requires a learner with restructuring profiling enabled).",
+            null, "csv", true);
+
     //New for prequential method DEPRECATED
     public IntOption widthOption = new IntOption("width",
             'w', "Size of Window", 1000);
@@ -181,6 +188,21 @@ public class EvaluatePrequentialRecordTreeRevision extends ClassificationMainTas
                         "Unable to open prediction result file: " + outputPredictionFile, ex);
             }
         }
+        //File for restructuring events
+        File restructuringLogFile = this.restructuringLogFileOption.getFile();
+        PrintStream restructuringLogStream = null;
+        if (restructuringLogFile != null && learner instanceof ProfilesRestructuring) {
+            try {
+                boolean exists = restructuringLogFile.exists();
+                restructuringLogStream = new PrintStream(
+                        new FileOutputStream(restructuringLogFile, exists), false);
+                if (!exists)
+                    restructuringLogStream.println("learning evaluation instances," + RestructuringEvent.csvHeader());
+            } catch (Exception ex) {
+                throw new RuntimeException(
+                        "Unable to open restructuring log file: " + restructuringLogFile, ex);
+            }
+        }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
@@ -204,6 +226,15 @@ public class EvaluatePrequentialRecordTreeRevision extends ClassificationMainTas
             evaluator.addResult(testInst, prediction);
             learner.trainOnInstance(trainInst);
             instancesProcessed++;
+            if (restructuringLogStream != null) {
+                RestructuringProfiler profiler = ((ProfilesRestructuring) learner).getRestructuringProfiler();
+                if (profiler != null) {
+                    profiler.setLogEvents(true);
+                    for (RestructuringEvent event : profiler.drainEvents()) {
+                        restructuringLogStream.println(instancesProcessed + "," + event.toCSV());
+                    }
+                }
+            }
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
                 long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
@@ -272,6 +303,9 @@ public class EvaluatePrequentialRecordTreeRevision extends ClassificationMainTas
         if (outputPredictionResultStream != null) {
             outputPredictionResultStream.close();
         }
+        if (restructuringLogStream != null) {
+            restructuringLogStream.close();
+        }
         return learningCurve;
     }
 
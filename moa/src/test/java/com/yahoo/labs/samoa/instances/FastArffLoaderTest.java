@@ -0,0 +1,166 @@
+package com.yahoo.labs.samoa.instances;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+/**
+ * Tests that FastArffLoader reads the same header and instances as ArffLoader.
+ */
+public class FastArffLoaderTest {
+
+    private static final String DENSE = "% comment line\n"
+            + "@relation 'edge test'\n"
+            + "\n"
+            + "@attribute a numeric\n"
+            + "@attribute 'b c' {x, 'y z', \"w\", 1.5}\n"
+            + "@attribute d real\n"
+            + "@attribute cls {yes,no}\n"
+            + "  @DATA\n"
+            + "1.5,x,3e2,yes\n"
+            + "% a comment\n"
+            + "-0, 'y z' , .5 , no % trailing comment\n"
+            + "\n"
+            + "?,?,?,?\n"
+            + "1e-5,\"w\",1234567890123456789,yes\n"
+            + "2.,1.5,-1.25E+3,no\n"
+            + "7,newlabel,0.1,yes\n"
+            + "3,'q\\'t',4,no\n"
+            + "0.000000000000000000000000001,x,1.7976931348623157E308,yes\n"
+            + "+4,x,NaN,no\n"
+            + "5,x,\t6\t,yes\n"
+            + "1,x,2,yes,\n";
+
+    private static final String SPARSE = "@relation sp\n"
+            + "@attribute a numeric\n"
+            + "@attribute b numeric\n"
+            + "@attribute c {u,v}\n"
+            + "@attribute d numeric\n"
+            + "@data\n"
+            + "{0 1.5, 2 v}\n"
+            + "{1 2,3 4}\n"
+            + "{}\n"
+            + "{ 0 3 , 2 u }\n";
+
+    private static final String CRLF = "@relation crlf\r\n"
+            + "@attribute a numeric\r\n"
+            + "@attribute b {p,q}\r\n"
+            + "@data\r\n"
+            + "1,p\r\n"
+            + "2,q\r\n"
+            + "\r\n"
+            + "3,p";
+
+    private static Instances readWithArffLoader(String arff) {
+        return new Instances(new StringReader(arff), 1, -1);
+    }
+
+    private static Instances readWithFastArffLoader(String arff) throws IOException {
+        return new Instances(new ByteArrayInputStream(arff.getBytes(Charset.defaultCharset())), -1);
+    }
+
+    private static void assertSameInstance(String message, Instance expected, Instance actual) {
+        assertEquals(message, expected.getClass(), actual.getClass());
+        assertEquals(message, expected.weight(), actual.weight(), 0.0);
+        assertEquals(message, expected.numValues(), actual.numValues());
+        for (int i = 0; i < expected.numValues(); i++) {
+            assertEquals(message, expected.index(i), actual.index(i));
+            assertEquals(message, Double.doubleToLongBits(expected.valueSparse(i)), Double.doubleToLongBits(actual.valueSparse(i)));
+        }
+    }
+
+    /**
+     * Reads all instances with both loaders and compares them and the headers (including labels added while reading)
+     * @return the number of instances
+     */
+    private static int assertSameAsArffLoader(Instances expected, Instances actual) {
+        int numInstances = 0;
+        while (true) {
+            boolean hasExpected = expected.readInstance(null);
+            assertEquals("instance " + numInstances, hasExpected, actual.readInstance(null));
+            if (!hasExpected)
+                break;
+            assertSameInstance("instance " + numInstances, expected.instance(0), actual.instance(0));
+            expected.delete();
+            actual.delete();
+            numInstances++;
+        }
+        assertEquals(expected.toString(), actual.toString());
+        return numInstances;
+    }
+
+    @Test
+    public void testDenseInstances() throws IOException {
+        assertEquals(11, assertSameAsArffLoader(readWithArffLoader(DENSE), readWithFastArffLoader(DENSE)));
+    }
+
+    @Test
+    public void testSparseInstances() throws IOException {
+        assertEquals(4, assertSameAsArffLoader(readWithArffLoader(SPARSE), readWithFastArffLoader(SPARSE)));
+    }
+
+    @Test
+    public void testCarriageReturns() throws IOException {
+        assertEquals(3, assertSameAsArffLoader(readWithArffLoader(CRLF), readWithFastArffLoader(CRLF)));
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        String path = ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath();
+        try (InputStream expectedStream = new FileInputStream(path); InputStream actualStream = new FileInputStream(path)) {
+            assertEquals(3, assertSameAsArffLoader(new Instances(new InputStreamReader(expectedStream), 1, -1),
+                    new Instances(actualStream, -1)));
+        }
+    }
+
+    @Test
+    public void testReadDenseInstanceIntoArray() throws IOException {
+        Instances expected = readWithArffLoader(DENSE);
+        Instances actual = readWithFastArffLoader(DENSE);
+        double[] values = new double[actual.numAttributes()];
+        int numInstances = 0;
+        while (actual.readDenseInstance(values)) {
+            assertTrue(expected.readInstance(null));
+            assertArrayEquals("instance " + numInstances, expected.instance(0).toDoubleArray(), values, 0.0);
+            expected.delete();
+            numInstances++;
+        }
+        assertFalse(expected.readInstance(null));
+        assertEquals(11, numInstances);
+    }
+
+    @Test
+    public void testReadDenseInstanceLeavesSparseInstances() throws IOException {
+        Instances expected = readWithArffLoader(SPARSE);
+        Instances actual = readWithFastArffLoader(SPARSE);
+        double[] values = new double[actual.numAttributes()];
+        for (int i = 0; i < 4; i++) {
+            assertFalse(actual.readDenseInstance(values));
+            assertTrue(actual.readInstance(null));
+            assertTrue(expected.readInstance(null));
+            assertSameInstance("instance " + i, expected.instance(0), actual.instance(0));
+            expected.delete();
+            actual.delete();
+        }
+        assertFalse(actual.readDenseInstance(values));
+        assertFalse(actual.readInstance(null));
+    }
+
+    @Test
+    public void testSupportedCharsets() {
+        assertTrue(FastArffLoader.supportsCharset(Charset.forName("UTF-8")));
+        assertTrue(FastArffLoader.supportsCharset(Charset.forName("ISO-8859-1")));
+        assertFalse(FastArffLoader.supportsCharset(Charset.forName("UTF-16")));
+    }
+}
@@ -0,0 +1,70 @@
+package moa.classifiers.trees;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.trees.plastic_util.CompiledTree;
+import moa.streams.InstanceStream;
+import moa.streams.generators.AgrawalGenerator;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+/**
+ * Tests that the array-encoded inference (compiledInference option) predicts exactly like walking the tree.
+ */
+public class CompiledInferenceTest {
+
+    private static final int NUM_INSTANCES = 10000;
+
+    private static <T extends CustomEFDT> T newLearner(T learner, InstanceStream stream, boolean compiled, boolean binarySplits) {
+        learner.gracePeriodOption.setValue(50);
+        learner.compiledInferenceOption.setValue(compiled);
+        learner.binarySplitsOption.setValue(binarySplits);
+        learner.setModelContext(stream.getHeader());
+        learner.prepareForUse();
+        return learner;
+    }
+
+    private static void assertSamePredictions(CustomEFDT reference, CustomEFDT compiled, InstanceStream stream) {
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            Instance inst = stream.nextInstance().getData();
+            double[] expected = reference.getVotesForInstance(inst);
+            assertArrayEquals("instance " + i, expected, compiled.getVotesForInstance(inst), 0.0);
+            if (i % 500 == 0 && reference.root != null) {
+                double[] walked = reference.root.predict(inst);
+                CompiledTree snapshot = CompiledTree.compile(reference.root, inst.dataset());
+                assertArrayEquals("snapshot at instance " + i, walked, snapshot.predictDetached(inst), 0.0);
+                assertArrayEquals("snapshot at instance " + i, walked, snapshot.predict(inst), 0.0);
+            }
+            reference.trainOnInstance(inst);
+            compiled.trainOnInstance(inst);
+        }
+        assertTrue("the tree should have split", reference.root.getNodeNumber() > 1);
+    }
+
+    @Test
+    public void testCustomEFDTMultiwaySplits() {
+        RandomTreeGenerator stream = new RandomTreeGenerator();
+        stream.prepareForUse();
+        assertSamePredictions(newLearner(new CustomEFDT(), stream, false, false),
+                newLearner(new CustomEFDT(), stream, true, false), stream);
+    }
+
+    @Test
+    public void testCustomEFDTBinarySplits() {
+        RandomTreeGenerator stream = new RandomTreeGenerator();
+        stream.prepareForUse();
+        assertSamePredictions(newLearner(new CustomEFDT(), stream, false, true),
+                newLearner(new CustomEFDT(), stream, true, true), stream);
+    }
+
+    @Test
+    public void testPLASTIC() {
+        AgrawalGenerator stream = new AgrawalGenerator();
+        stream.prepareForUse();
+        assertSamePredictions(newLearner(new PLASTIC(), stream, false, false),
+                newLearner(new PLASTIC(), stream, true, false), stream);
+    }
+}
@@ -0,0 +1,89 @@
+package moa.classifiers.trees;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.generators.AgrawalGenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests the concurrentReads option: predictions from the published snapshot match the live tree,
+ * and other threads can predict while a single thread trains.
+ */
+public class ConcurrentReadsTest {
+
+    private static final int NUM_INSTANCES = 10000;
+
+    private static PLASTIC newLearner(AgrawalGenerator stream, boolean concurrentReads) {
+        PLASTIC learner = new PLASTIC();
+        learner.gracePeriodOption.setValue(50);
+        learner.concurrentReadsOption.setValue(concurrentReads);
+        learner.setModelContext(stream.getHeader());
+        learner.prepareForUse();
+        return learner;
+    }
+
+    private static AgrawalGenerator newStream() {
+        AgrawalGenerator stream = new AgrawalGenerator();
+        stream.prepareForUse();
+        return stream;
+    }
+
+    @Test
+    public void testSamePredictionsAsLiveTree() {
+        AgrawalGenerator stream = newStream();
+        PLASTIC reference = newLearner(stream, false);
+        PLASTIC concurrent = newLearner(stream, true);
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            Instance inst = stream.nextInstance().getData();
+            double[] expected = reference.getVotesForInstance(inst);
+            if (reference.root != null && concurrent.root != null)  // the live tree predicts zeros before the first instance
+                assertArrayEquals("instance " + i, expected, concurrent.getVotesForInstance(inst), 0.0);
+            reference.trainOnInstance(inst);
+            concurrent.trainOnInstance(inst);
+        }
+        assertTrue("the tree should have split", concurrent.root.getNodeNumber() > 1);
+    }
+
+    @Test
+    public void testPredictWhileTraining() throws Exception {
+        AgrawalGenerator trainStream = newStream();
+        PLASTIC learner = newLearner(trainStream, true);
+        AtomicBoolean training = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(executor.submit(() -> {
+                    AgrawalGenerator testStream = newStream();
+                    int numPredictions = 0;
+                    while (training.get() || numPredictions == 0) {
+                        Instance inst = testStream.nextInstance().getData();
+                        double[] votes = learner.getVotesForInstance(inst);
+                        assertNotNull(votes);
+                        numPredictions++;
+                    }
+                    return numPredictions;
+                }));
+            }
+            for (int i = 0; i < NUM_INSTANCES; i++)
+                learner.trainOnInstance(trainStream.nextInstance().getData());
+            training.set(false);
+            for (Future<Integer> reader : readers)
+                assertTrue(reader.get() > 0);  // rethrows the errors of the readers
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue("the tree should have split", learner.root.getNodeNumber() > 1);
+    }
+}
@@ -0,0 +1,81 @@
+package moa.classifiers.trees;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.generators.AgrawalGenerator;
+
+import org.junit.Test;
+
+/**
+ * Tests that training on mini-batches gives the same model as training on the instances one by one.
+ * The function of the stream changes halfway, so that the trees are also revised.
+ */
+public class MiniBatchTrainingTest {
+
+    private static final int NUM_INSTANCES = 10000;
+
+    private static final int NUM_TEST_INSTANCES = 200;
+
+    private static <T extends CustomEFDT> T prepare(T learner, AgrawalGenerator stream) {
+        learner.gracePeriodOption.setValue(50);
+        learner.setModelContext(stream.getHeader());
+        learner.prepareForUse();
+        return learner;
+    }
+
+    private static void assertSameAsPerInstanceTraining(CustomEFDT perInstance, CustomEFDT miniBatch, int batchSize) {
+        AgrawalGenerator testStream = new AgrawalGenerator();
+        testStream.instanceRandomSeedOption.setValue(7);
+        testStream.prepareForUse();
+        Instance[] testInstances = new Instance[NUM_TEST_INSTANCES];
+        for (int i = 0; i < testInstances.length; i++)
+            testInstances[i] = testStream.nextInstance().getData();
+
+        AgrawalGenerator stream = new AgrawalGenerator();
+        stream.prepareForUse();
+        prepare(perInstance, stream);
+        prepare(miniBatch, stream);
+        Instance[] batch = new Instance[batchSize];
+        for (int numTrained = 0; numTrained < NUM_INSTANCES; numTrained += batchSize) {
+            if (numTrained >= NUM_INSTANCES / 2 && stream.functionOption.getValue() == 1) {
+                stream.functionOption.setValue(5);
+                stream.prepareForUse();
+            }
+            for (int i = 0; i < batchSize; i++) {
+                batch[i] = stream.nextInstance().getData();
+                perInstance.trainOnInstance(batch[i]);
+            }
+            miniBatch.trainOnInstances(batch);
+
+            String message = "after " + (numTrained + batchSize) + " instances";
+            assertEquals(message, perInstance.root.getNodeNumber(), miniBatch.root.getNodeNumber());
+            assertEquals(message, perInstance.trainingWeightSeenByModel(), miniBatch.trainingWeightSeenByModel(), 0.0);
+            for (Instance inst : testInstances)
+                assertArrayEquals(message, perInstance.getVotesForInstance(inst), miniBatch.getVotesForInstance(inst), 0.0);
+        }
+        assertTrue("the tree should have split", miniBatch.root.getNodeNumber() > 1);
+    }
+
+    @Test
+    public void testCustomEFDT() {
+        assertSameAsPerInstanceTraining(new CustomEFDT(), new CustomEFDT(), 50);
+    }
+
+    @Test
+    public void testCustomEFDTSingleInstanceBatches() {
+        assertSameAsPerInstanceTraining(new CustomEFDT(), new CustomEFDT(), 1);
+    }
+
+    @Test
+    public void testPLASTIC() {
+        assertSameAsPerInstanceTraining(new PLASTIC(), new PLASTIC(), 50);
+    }
+
+    @Test
+    public void testPLASTICLargeBatches() {
+        assertSameAsPerInstanceTraining(new PLASTIC(), new PLASTIC(), 500);
+    }
+}
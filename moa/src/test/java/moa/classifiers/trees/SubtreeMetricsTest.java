@@ -0,0 +1,98 @@
+package moa.classifiers.trees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.classifiers.trees.plastic_util.CustomEFDTNode;
+import moa.streams.generators.AgrawalGenerator;
+
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+/**
+ * Tests that the leaf count, node count and depth that the nodes maintain while learning match a full recount.
+ * The function of the stream changes halfway, so that the trees are also revised.
+ */
+public class SubtreeMetricsTest {
+
+    private static final int NUM_INSTANCES = 12000;
+
+    private static final int CHECK_INTERVAL = 250;
+
+    /**
+     * Leaf count, node count and depth of the deepest leaf, counted by traversing the subtree
+     */
+    private static int[] recount(CustomEFDTNode node) {
+        if (node.getSuccessors() == null || node.getSuccessors().size() == 0)
+            return new int[]{1, 1, node.getDepth()};
+        int[] counts = {0, 1, Integer.MIN_VALUE};
+        for (CustomEFDTNode successor : node.getSuccessors().getAllSuccessors()) {
+            int[] successorCounts = recount(successor);
+            counts[0] += successorCounts[0];
+            counts[1] += successorCounts[1];
+            counts[2] = Math.max(counts[2], successorCounts[2]);
+        }
+        return counts;
+    }
+
+    /**
+     * Checks the maintained metrics of every node in the subtree
+     * @return the number of nodes in the subtree
+     */
+    private static int assertMetricsMatchRecount(CustomEFDTNode node, int instancesSeen) {
+        int[] counts = recount(node);
+        String message = "after " + instancesSeen + " instances";
+        assertEquals(message, counts[0], node.getLeafNumber());
+        assertEquals(message, counts[1], node.getNodeNumber());
+        assertEquals(message, counts[2], node.getSubtreeDepth());
+        if (node.getSuccessors() != null) {
+            for (CustomEFDTNode successor : node.getSuccessors().getAllSuccessors())
+                assertMetricsMatchRecount(successor, instancesSeen);
+        }
+        return counts[1];
+    }
+
+    private static void assertMetricsMatchRecount(Classifier learner, Supplier<CustomEFDTNode> root) {
+        AgrawalGenerator stream = new AgrawalGenerator();
+        stream.prepareForUse();
+        learner.setModelContext(stream.getHeader());
+        learner.prepareForUse();
+        int maxNodes = 1;
+        for (int i = 1; i <= NUM_INSTANCES; i++) {
+            if (i == NUM_INSTANCES / 2) {
+                stream.functionOption.setValue(5);
+                stream.prepareForUse();
+            }
+            Instance inst = stream.nextInstance().getData();
+            learner.getVotesForInstance(inst);
+            learner.trainOnInstance(inst);
+            if (i % CHECK_INTERVAL == 0)
+                maxNodes = Math.max(maxNodes, assertMetricsMatchRecount(root.get(), i));
+        }
+        assertTrue("the tree should have split", maxNodes > 1);
+    }
+
+    @Test
+    public void testCustomEFDT() {
+        CustomEFDT learner = new CustomEFDT();
+        learner.gracePeriodOption.setValue(50);
+        assertMetricsMatchRecount(learner, () -> learner.root);
+    }
+
+    @Test
+    public void testPLASTIC() {
+        PLASTIC learner = new PLASTIC();
+        learner.gracePeriodOption.setValue(50);
+        assertMetricsMatchRecount(learner, () -> learner.root);
+    }
+
+    @Test
+    public void testEFHAT() {
+        EFHAT learner = new EFHAT();
+        learner.gracePeriodOption.setValue(50);
+        assertMetricsMatchRecount(learner, () -> learner.root);
+    }
+}
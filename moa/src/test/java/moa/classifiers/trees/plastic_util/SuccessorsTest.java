@@ -0,0 +1,119 @@
+package moa.classifiers.trees.plastic_util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+
+import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
+import moa.classifiers.core.splitcriteria.InfoGainSplitCriterion;
+import moa.core.DoubleVector;
+
+import org.junit.Test;
+
+/**
+ * Tests that routing through the index of Successors gives the same successors as scanning the keys.
+ */
+public class SuccessorsTest {
+
+    private static final double[] VALUES = {-2.0, -1.0, -0.5, 0.0, 0.25, 0.5, 0.75, 1.0, 1.5, 2.0, 3.0, 4.0, 100.0};
+
+    private static CustomEFDTNode newLeaf() {
+        return new CustomEFDTNode(new InfoGainSplitCriterion(), 200, 1e-7, 0.2, false, "MC", 2000,
+                0, 20, 0.05, 0.05, 0.5, false, false, new NominalAttributeClassObserver(),
+                new DoubleVector(), new ArrayList<>(), -1);
+    }
+
+    /**
+     * The successor found by comparing the value with each key, as routing worked before the index
+     */
+    private static CustomEFDTNode scan(Successors successors, double value) {
+        for (SuccessorIdentifier key : successors.getKeyset()) {
+            if (key.equals(Double.valueOf(value)))
+                return successors.getSuccessorNode(key);
+        }
+        return null;
+    }
+
+    private static void assertRoutesLikeScan(Successors successors) {
+        for (double value : VALUES) {
+            assertSame("value " + value, scan(successors, value), successors.getSuccessorNode(value));
+            assertSame("value " + value, scan(successors, value), successors.getSuccessorNode(Double.valueOf(value)));
+        }
+    }
+
+    @Test
+    public void testNumericSplit() {
+        CustomEFDTNode lower = newLeaf();
+        CustomEFDTNode upper = newLeaf();
+        Successors successors = new Successors(true, true, 0.5);
+        successors.addSuccessorNumeric(0.5, lower, true);
+        assertSame(lower, successors.getSuccessorNode(0.5));
+        assertNull(successors.getSuccessorNode(0.75));
+        assertRoutesLikeScan(successors);
+
+        successors.addSuccessorNumeric(0.5, upper, false);
+        assertSame(lower, successors.getSuccessorNode(-2.0));
+        assertSame(lower, successors.getSuccessorNode(0.5));
+        assertSame(upper, successors.getSuccessorNode(0.75));
+        assertNull(successors.getSuccessorNode((Double) null));
+        assertRoutesLikeScan(successors);
+    }
+
+    @Test
+    public void testNominalBinarySplit() {
+        CustomEFDTNode value = newLeaf();
+        CustomEFDTNode other = newLeaf();
+        Successors successors = new Successors(true, false, 2.0);
+        successors.addSuccessorNominalBinary(2.0, value);
+        assertSame(value, successors.getSuccessorNode(2.0));
+        assertNull(successors.getSuccessorNode(1.0));
+        assertRoutesLikeScan(successors);
+
+        successors.addDefaultSuccessorNominalBinary(other);
+        assertSame(value, successors.getSuccessorNode(2.0));
+        assertSame(other, successors.getSuccessorNode(0.0));
+        assertSame(other, successors.getSuccessorNode(3.0));
+        assertRoutesLikeScan(successors);
+    }
+
+    @Test
+    public void testNominalMultiwaySplit() {
+        CustomEFDTNode[] nodes = {newLeaf(), newLeaf(), newLeaf()};
+        Successors successors = new Successors(false, false, null);
+        successors.addSuccessorNominalMultiway(0.0, nodes[0]);
+        successors.addSuccessorNominalMultiway(1.0, nodes[1]);
+        successors.addSuccessorNominalMultiway(3.0, nodes[2]);
+        assertSame(nodes[0], successors.getSuccessorNode(0.0));
+        assertSame(nodes[1], successors.getSuccessorNode(1.0));
+        assertSame(nodes[2], successors.getSuccessorNode(3.0));
+        assertNull(successors.getSuccessorNode(2.0));
+        assertNull(successors.getSuccessorNode(1.5));
+        assertNull(successors.getSuccessorNode(-1.0));
+        assertRoutesLikeScan(successors);
+    }
+
+    @Test
+    public void testCopyKeepsRouting() {
+        Successors successors = new Successors(false, false, null);
+        successors.addSuccessorNominalMultiway(0.0, newLeaf());
+        successors.addSuccessorNominalMultiway(2.0, newLeaf());
+        Successors copy = new Successors(successors, true);
+        for (double value : VALUES)
+            assertSame(successors.getSuccessorNode(value), copy.getSuccessorNode(value));
+
+        Successors empty = new Successors(successors, false);
+        for (double value : VALUES)
+            assertNull(empty.getSuccessorNode(value));
+    }
+
+    @Test
+    public void testRejectsThirdBinarySuccessor() {
+        Successors successors = new Successors(true, true, 0.5);
+        successors.addSuccessorNumeric(0.5, newLeaf(), true);
+        successors.addSuccessorNumeric(0.5, newLeaf(), false);
+        assertFalse(successors.addSuccessorNumeric(0.5, newLeaf(), true));
+        assertRoutesLikeScan(successors);
+    }
+}
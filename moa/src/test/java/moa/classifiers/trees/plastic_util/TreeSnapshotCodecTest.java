@@ -0,0 +1,139 @@
+package moa.classifiers.trees.plastic_util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.trees.CustomEFDT;
+import moa.classifiers.trees.PLASTIC;
+import moa.core.Measurement;
+import moa.streams.generators.AgrawalGenerator;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Tests that the binary snapshots of CustomEFDT and PLASTIC restore the model exactly.
+ */
+public class TreeSnapshotCodecTest {
+
+    private static final int NUM_INSTANCES = 6000;
+
+    private static final int NUM_TEST_INSTANCES = 500;
+
+    private static <T extends CustomEFDT> T prepare(T learner, AgrawalGenerator stream) {
+        learner.setModelContext(stream.getHeader());
+        learner.prepareForUse();
+        return learner;
+    }
+
+    private static AgrawalGenerator newStream(int seed) {
+        AgrawalGenerator stream = new AgrawalGenerator();
+        stream.instanceRandomSeedOption.setValue(seed);
+        stream.prepareForUse();
+        return stream;
+    }
+
+    private static byte[] snapshot(CustomEFDT learner) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        learner.writeSnapshot(bytes);
+        return bytes.toByteArray();
+    }
+
+    private static void assertSameModel(CustomEFDT expected, CustomEFDT actual) {
+        Measurement[] expectedMeasurements = expected.getModelMeasurements();
+        Measurement[] actualMeasurements = actual.getModelMeasurements();
+        assertEquals(expectedMeasurements.length, actualMeasurements.length);
+        for (int i = 0; i < expectedMeasurements.length; i++)
+            assertEquals(expectedMeasurements[i].getName(), expectedMeasurements[i].getValue(), actualMeasurements[i].getValue(), 0.0);
+        AgrawalGenerator testStream = newStream(7);
+        for (int i = 0; i < NUM_TEST_INSTANCES; i++) {
+            Instance inst = testStream.nextInstance().getData();
+            assertArrayEquals("test instance " + i, expected.getVotesForInstance(inst), actual.getVotesForInstance(inst), 0.0);
+        }
+    }
+
+    /**
+     * Restores a snapshot of a trained learner and checks that both learners predict and continue to learn identically
+     */
+    private static void assertRoundTrip(CustomEFDT learner, CustomEFDT restored) throws IOException {
+        AgrawalGenerator stream = newStream(1);
+        prepare(learner, stream);
+        for (int i = 0; i < NUM_INSTANCES; i++)
+            learner.trainOnInstance(stream.nextInstance().getData());
+
+        prepare(restored, stream);
+        restored.readSnapshot(new ByteArrayInputStream(snapshot(learner)));
+        assertEquals(learner.getOptions().getAsCLIString(), restored.getOptions().getAsCLIString());
+        assertEquals(learner.trainingWeightSeenByModel(), restored.trainingWeightSeenByModel(), 0.0);
+        assertSameModel(learner, restored);
+        assertArrayEquals(snapshot(learner), snapshot(restored));
+
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            Instance inst = stream.nextInstance().getData();
+            learner.trainOnInstance(inst);
+            restored.trainOnInstance(inst);
+        }
+        assertSameModel(learner, restored);
+    }
+
+    @Test
+    public void testCustomEFDT() throws IOException {
+        CustomEFDT learner = new CustomEFDT();
+        learner.gracePeriodOption.setValue(50);
+        assertRoundTrip(learner, new CustomEFDT());
+    }
+
+    @Test
+    public void testCustomEFDTBinarySplits() throws IOException {
+        CustomEFDT learner = new CustomEFDT();
+        learner.gracePeriodOption.setValue(50);
+        learner.binarySplitsOption.setValue(true);
+        assertRoundTrip(learner, new CustomEFDT());
+    }
+
+    @Test
+    public void testPLASTIC() throws IOException {
+        PLASTIC learner = new PLASTIC();
+        learner.gracePeriodOption.setValue(50);
+        assertRoundTrip(learner, new PLASTIC());
+        assertTrue(learner.getModelMeasurements().length > 0);
+    }
+
+    @Test
+    public void testUntrainedLearner() throws IOException {
+        AgrawalGenerator stream = newStream(1);
+        PLASTIC learner = prepare(new PLASTIC(), stream);
+        PLASTIC restored = prepare(new PLASTIC(), stream);
+        restored.readSnapshot(new ByteArrayInputStream(snapshot(learner)));
+        assertSameModel(learner, restored);
+    }
+
+    @Test
+    public void testRejectsSnapshotOfOtherLearner() throws IOException {
+        AgrawalGenerator stream = newStream(1);
+        CustomEFDT learner = prepare(new CustomEFDT(), stream);
+        learner.trainOnInstance(stream.nextInstance().getData());
+        try {
+            prepare(new PLASTIC(), stream).readSnapshot(new ByteArrayInputStream(snapshot(learner)));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRejectsOtherInput() {
+        try {
+            prepare(new PLASTIC(), newStream(1)).readSnapshot(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package moa.evaluation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import moa.classifiers.trees.PLASTIC;
+import moa.evaluation.EfficientEvaluationLoops.PrequentialResult;
+import moa.learners.Learner;
+import moa.streams.ConceptDriftStream;
+import moa.streams.ExampleStream;
+import moa.streams.generators.AgrawalGenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that the efficient evaluation loops give the same results as the sequential PrequentialEvaluation.
+ */
+public class EfficientEvaluationLoopsTest {
+
+    private static final int WINDOW_SIZE = 1000;
+
+    /**
+     * Agrawal function 1 that drifts to function 5 halfway, so that the tree is revised
+     */
+    private static ExampleStream newStream() {
+        ConceptDriftStream stream = new ConceptDriftStream();
+        stream.streamOption.setValueViaCLIString("generators.AgrawalGenerator -f 1");
+        stream.driftstreamOption.setValueViaCLIString("generators.AgrawalGenerator -f 5");
+        stream.positionOption.setValue(5000);
+        stream.widthOption.setValue(1);
+        stream.prepareForUse();
+        return stream;
+    }
+
+    private static Learner newLearner(int gracePeriod) {
+        PLASTIC learner = new PLASTIC();
+        learner.gracePeriodOption.setValue(gracePeriod);
+        learner.setModelContext(newStream().getHeader());
+        learner.prepareForUse();
+        return learner;
+    }
+
+    private static BasicClassificationPerformanceEvaluator newBasicEvaluator() {
+        BasicClassificationPerformanceEvaluator evaluator = new BasicClassificationPerformanceEvaluator();
+        evaluator.prepareForUse();
+        return evaluator;
+    }
+
+    private static WindowClassificationPerformanceEvaluator newWindowedEvaluator() {
+        WindowClassificationPerformanceEvaluator evaluator = new WindowClassificationPerformanceEvaluator();
+        evaluator.widthOption.setValue(WINDOW_SIZE);
+        evaluator.prepareForUse();
+        return evaluator;
+    }
+
+    private static PrequentialResult sequentialResult(int gracePeriod, long maxInstances) {
+        return EfficientEvaluationLoops.PrequentialEvaluation(newStream(), newLearner(gracePeriod),
+                newBasicEvaluator(), newWindowedEvaluator(), maxInstances, WINDOW_SIZE, true, true);
+    }
+
+    private static void assertSameResult(PrequentialResult expected, PrequentialResult actual) {
+        assertArrayEquals(expected.cumulativeResults, actual.cumulativeResults, 0.0);
+        assertEquals(expected.windowedResults.size(), actual.windowedResults.size());
+        for (int i = 0; i < expected.windowedResults.size(); i++)
+            assertArrayEquals("window " + i, expected.windowedResults.get(i), actual.windowedResults.get(i), 0.0);
+        assertEquals(expected.treeRevisionIndices, actual.treeRevisionIndices);
+        assertEquals(expected.numberOfLeaves, actual.numberOfLeaves);
+    }
+
+    private static void assertPipelinedSameAsSequential(long maxInstances, int queueCapacity) {
+        PrequentialResult expected = sequentialResult(50, maxInstances);
+        PrequentialResult actual = EfficientEvaluationLoops.PipelinedPrequentialEvaluation(newStream(), newLearner(50),
+                newBasicEvaluator(), newWindowedEvaluator(), maxInstances, WINDOW_SIZE, true, true, queueCapacity);
+        assertSameResult(expected, actual);
+        assertFalse("the tree should have been revised", expected.treeRevisionIndices.isEmpty());
+    }
+
+    @Test
+    public void testPipelined() {
+        assertPipelinedSameAsSequential(10000, 8192);
+    }
+
+    @Test
+    public void testPipelinedSmallQueues() {
+        assertPipelinedSameAsSequential(10000, 1);
+    }
+
+    @Test
+    public void testPipelinedIncompleteWindowAndChunk() {
+        assertPipelinedSameAsSequential(10123, 300);
+    }
+
+    @Test
+    public void testParallel() {
+        int[] gracePeriods = {50, 100, 200, 400, 50};
+        List<Learner> learners = new ArrayList<>();
+        List<BasicClassificationPerformanceEvaluator> basicEvaluators = new ArrayList<>();
+        List<WindowClassificationPerformanceEvaluator> windowedEvaluators = new ArrayList<>();
+        for (int gracePeriod : gracePeriods) {
+            learners.add(newLearner(gracePeriod));
+            basicEvaluators.add(newBasicEvaluator());
+            windowedEvaluators.add(newWindowedEvaluator());
+        }
+        List<PrequentialResult> results = EfficientEvaluationLoops.ParallelPrequentialEvaluation(newStream(), learners,
+                basicEvaluators, windowedEvaluators, 10123, WINDOW_SIZE, true, true, 3);
+        assertEquals(gracePeriods.length, results.size());
+        for (int i = 0; i < gracePeriods.length; i++)
+            assertSameResult(sequentialResult(gracePeriods[i], 10123), results.get(i));
+    }
+
+    private static AgrawalGenerator newReusingStream(int numReusedExamples) {
+        AgrawalGenerator stream = new AgrawalGenerator();
+        stream.functionOption.setValue(3);
+        stream.prepareForUse();
+        assertTrue(stream.setInstanceReuse(numReusedExamples) || numReusedExamples == 0);
+        return stream;
+    }
+
+    private static PrequentialResult sequentialResultWithoutReuse(Learner learner) {
+        return EfficientEvaluationLoops.PrequentialEvaluation(newReusingStream(0), learner,
+                newBasicEvaluator(), newWindowedEvaluator(), 5000, WINDOW_SIZE, true, true);
+    }
+
+    @Test
+    public void testInstanceReuseIsRestored() {
+        AgrawalGenerator stream = newReusingStream(4);
+        assertSameResult(sequentialResultWithoutReuse(newLearner(50)),
+                EfficientEvaluationLoops.PrequentialEvaluation(stream, newLearner(50),
+                        newBasicEvaluator(), newWindowedEvaluator(), 5000, WINDOW_SIZE, true, true));
+        assertEquals(4, stream.getInstanceReuse());
+
+        stream = newReusingStream(4);
+        assertSameResult(sequentialResultWithoutReuse(newLearner(50)),
+                EfficientEvaluationLoops.PipelinedPrequentialEvaluation(stream, newLearner(50),
+                        newBasicEvaluator(), newWindowedEvaluator(), 5000, WINDOW_SIZE, true, true, 16));
+        assertEquals(4, stream.getInstanceReuse());
+
+        stream = newReusingStream(4);
+        List<Learner> learners = new ArrayList<>();
+        List<BasicClassificationPerformanceEvaluator> basicEvaluators = new ArrayList<>();
+        List<WindowClassificationPerformanceEvaluator> windowedEvaluators = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            learners.add(newLearner(50 + 50 * i));
+            basicEvaluators.add(newBasicEvaluator());
+            windowedEvaluators.add(newWindowedEvaluator());
+        }
+        List<PrequentialResult> results = EfficientEvaluationLoops.ParallelPrequentialEvaluation(stream, learners,
+                basicEvaluators, windowedEvaluators, 5000, WINDOW_SIZE, true, true, 2);
+        for (int i = 0; i < 2; i++)
+            assertSameResult(sequentialResultWithoutReuse(newLearner(50 + 50 * i)), results.get(i));
+        assertEquals(4, stream.getInstanceReuse());
+    }
+}
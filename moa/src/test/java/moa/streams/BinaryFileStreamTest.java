@@ -0,0 +1,218 @@
+package moa.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that BinaryFileStream reads the instances written by its Writer, for dense and sparse rows.
+ */
+public class BinaryFileStreamTest {
+
+    private static final int NUM_WIDE_ATTRIBUTES = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(InstancesHeader header, List<Instance> instances) throws IOException {
+        File file = folder.newFile();
+        try (BinaryFileStream.Writer writer = new BinaryFileStream.Writer(file, header)) {
+            for (Instance instance : instances)
+                writer.write(instance);
+        }
+        return file;
+    }
+
+    private static void assertSameInstances(List<Instance> expected, BinaryFileStream stream) {
+        int numInstances = 0;
+        while (stream.hasMoreInstances()) {
+            Instance actual = stream.nextInstance().getData();
+            Instance instance = expected.get(numInstances);
+            String message = "instance " + numInstances;
+            assertEquals(message, instance.weight(), actual.weight(), 0.0);
+            assertArrayEquals(message, instance.toDoubleArray(), actual.toDoubleArray(), 0.0);
+            numInstances++;
+        }
+        assertEquals(expected.size(), numInstances);
+        assertEquals(0, stream.estimatedRemainingInstances());
+    }
+
+    /**
+     * Numeric wide instances with a nominal class, dense or with every other attribute set
+     */
+    private static List<Instance> wideInstances(InstancesHeader header, boolean sparse) {
+        Random random = new Random(3);
+        List<Instance> instances = new ArrayList<>();
+        for (int k = 0; k < 5; k++) {
+            Instance instance;
+            if (sparse) {
+                int numValues = NUM_WIDE_ATTRIBUTES / 2 - 1000;
+                int[] indices = new int[numValues];
+                double[] values = new double[numValues];
+                for (int i = 0; i < numValues; i++) {
+                    indices[i] = 2 * i;
+                    values[i] = random.nextDouble();
+                }
+                instance = new SparseInstance(1.0, values, indices, NUM_WIDE_ATTRIBUTES + 1);
+            } else {
+                double[] values = new double[NUM_WIDE_ATTRIBUTES + 1];
+                for (int i = 0; i < NUM_WIDE_ATTRIBUTES; i++)
+                    values[i] = random.nextDouble();
+                values[NUM_WIDE_ATTRIBUTES] = k % 2;
+                instance = new DenseInstance(1.0 + k, values);
+            }
+            instance.setDataset(header);
+            instances.add(instance);
+        }
+        return instances;
+    }
+
+    private static InstancesHeader wideHeader() {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < NUM_WIDE_ATTRIBUTES; i++)
+            attributes.add(new Attribute("a" + i));
+        attributes.add(new Attribute("class", Arrays.asList("x", "y")));
+        Instances dataset = new Instances("wide", attributes, 0);
+        dataset.setClassIndex(NUM_WIDE_ATTRIBUTES);
+        return new InstancesHeader(dataset);
+    }
+
+    private static List<Instance> readArff(ArffFileStream stream) {
+        List<Instance> instances = new ArrayList<>();
+        while (stream.hasMoreInstances())
+            instances.add(stream.nextInstance().getData());
+        return instances;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        String path = ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath();
+        ArffFileStream arffStream = new ArffFileStream(path, -1);
+        List<Instance> instances = readArff(arffStream);
+        instances.get(1).setWeight(2.5);
+        File file = write(arffStream.getHeader(), instances);
+        arffStream.close();
+
+        BinaryFileStream stream = new BinaryFileStream(file.getPath(), 0);
+        try {
+            assertEquals(arffStream.getHeader().toString(), stream.getHeader().toString());
+            assertEquals(arffStream.getHeader().classIndex(), stream.getHeader().classIndex());
+            assertEquals(instances.size(), stream.estimatedRemainingInstances());
+            assertSameInstances(instances, stream);
+            stream.restart();
+            assertSameInstances(instances, stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testClassIndexOption() throws IOException {
+        InstancesHeader header = wideHeader();
+        File file = write(header, wideInstances(header, false));
+        BinaryFileStream stream = new BinaryFileStream(file.getPath(), 1);
+        try {
+            assertEquals(0, stream.getHeader().classIndex());
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testWideDenseInstances() throws IOException {
+        InstancesHeader header = wideHeader();
+        List<Instance> instances = wideInstances(header, false);
+        BinaryFileStream stream = new BinaryFileStream(write(header, instances).getPath(), 0);
+        try {
+            assertEquals(NUM_WIDE_ATTRIBUTES, stream.getHeader().classIndex());
+            assertSameInstances(instances, stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testWideSparseInstances() throws IOException {
+        InstancesHeader header = wideHeader();
+        List<Instance> instances = wideInstances(header, true);
+        BinaryFileStream stream = new BinaryFileStream(write(header, instances).getPath(), 0);
+        try {
+            Instance first = stream.nextInstance().getData();
+            assertTrue(first instanceof SparseInstance);
+            assertEquals(instances.get(0).numValues(), first.numValues());
+            stream.restart();
+            assertSameInstances(instances, stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testRestartAfterClose() throws IOException {
+        InstancesHeader header = wideHeader();
+        List<Instance> instances = wideInstances(header, false);
+        BinaryFileStream stream = new BinaryFileStream(write(header, instances).getPath(), 0);
+        stream.nextInstance();
+        stream.close();
+        stream.close();
+        stream.restart();
+        try {
+            assertSameInstances(instances, stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testInstanceReuse() throws IOException {
+        InstancesHeader header = wideHeader();
+        List<Instance> instances = wideInstances(header, false);
+        BinaryFileStream stream = new BinaryFileStream(write(header, instances).getPath(), 0);
+        try {
+            assertTrue(stream.setInstanceReuse(2));
+            Instance first = stream.nextInstance().getData();
+            Instance second = stream.nextInstance().getData();
+            assertArrayEquals(instances.get(0).toDoubleArray(), first.toDoubleArray(), 0.0);
+            assertArrayEquals(instances.get(1).toDoubleArray(), second.toDoubleArray(), 0.0);
+            assertTrue(first == stream.nextInstance().getData());  // the ring holds two instances
+            stream.restart();  // keeps reusing instances
+            assertSameInstances(instances, stream);
+
+            assertFalse(stream.setInstanceReuse(0));
+            stream.restart();
+            assertFalse(stream.nextInstance().getData() == stream.nextInstance().getData());
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testNoInstanceReuseForSparseRows() throws IOException {
+        InstancesHeader header = wideHeader();
+        BinaryFileStream stream = new BinaryFileStream(write(header, wideInstances(header, true)).getPath(), 0);
+        try {
+            assertFalse(stream.setInstanceReuse(2));
+        } finally {
+            stream.close();
+        }
+    }
+}
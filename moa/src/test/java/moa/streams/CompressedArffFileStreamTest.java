@@ -0,0 +1,258 @@
+package moa.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import moa.core.BlockGzipInputStream;
+import moa.core.ReadAheadInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests that ArffFileStream reads gzip and block gzip files like ArffLoader reads the uncompressed file,
+ * and the streams that decompress them in the background.
+ */
+public class CompressedArffFileStreamTest {
+
+    private static final int NUM_INSTANCES = 3000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] arff() {
+        StringBuilder arff = new StringBuilder();
+        arff.append("@relation compressed\n")
+                .append("@attribute a numeric\n")
+                .append("@attribute b {x,y,z}\n")
+                .append("@attribute c numeric\n")
+                .append("@attribute class {yes,no}\n")
+                .append("@data\n");
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            arff.append(random.nextGaussian()).append(',')
+                    .append("xyz".charAt(random.nextInt(3))).append(',')
+                    .append(random.nextInt(1000)).append(',')
+                    .append(random.nextBoolean() ? "yes" : "no").append('\n');
+        }
+        return arff.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Compresses the data in the block gzip format of bgzip, with blocks of at most blockSize bytes
+     * and the empty block that marks the end of the file
+     */
+    private static byte[] blockGzip(byte[] data, int blockSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int offset = 0; offset < data.length; offset += blockSize)
+            writeBlock(out, data, offset, Math.min(blockSize, data.length - offset));
+        writeBlock(out, data, 0, 0);
+        return out.toByteArray();
+    }
+
+    private static void writeBlock(ByteArrayOutputStream out, byte[] data, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        byte[] compressed = new byte[length + 1024];
+        int compressedLength = 0;
+        while (!deflater.finished())
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        int blockSizeMinusOne = 18 + compressedLength + 8 - 1;
+        out.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+                (byte) blockSizeMinusOne, (byte) (blockSizeMinusOne >> 8)}, 0, 18);
+        out.write(compressed, 0, compressedLength);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, length);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        for (int i = 0; i < 4; i++)
+            out.write(value >> (8 * i));
+    }
+
+    private File write(String name, byte[] data) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[777];
+        for (int n; (n = in.read(buffer)) >= 0; )
+            bytes.write(buffer, 0, n);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the file with ArffFileStream and compares the instances with those read by ArffLoader from the plain file
+     */
+    private static void assertSameAsArffLoader(File plain, File file) throws IOException {
+        Instances expected;
+        try (InputStream in = new FileInputStream(plain)) {
+            expected = new Instances(new InputStreamReader(in, StandardCharsets.UTF_8), 1, -1);
+            ArffFileStream stream = new ArffFileStream(file.getPath(), -1);
+            try {
+                assertEquals(expected.toString(), stream.getHeader().toString());
+                for (int pass = 0; pass < 2; pass++) {  // also after restarting
+                    int numInstances = 0;
+                    while (stream.hasMoreInstances()) {
+                        assertTrue(pass > 0 || expected.readInstance(null));
+                        Instance instance = stream.nextInstance().getData();
+                        if (pass == 0) {
+                            assertArrayEquals("instance " + numInstances, expected.instance(0).toDoubleArray(),
+                                    instance.toDoubleArray(), 0.0);
+                            expected.delete();
+                        }
+                        numInstances++;
+                    }
+                    assertEquals(NUM_INSTANCES, numInstances);
+                    stream.restart();
+                }
+                assertFalse(expected.readInstance(null));
+            } finally {
+                stream.close();
+            }
+        }
+    }
+
+    @Test
+    public void testGzipFile() throws IOException {
+        byte[] arff = arff();
+        assertSameAsArffLoader(write("plain.arff", arff), write("gzip.arff.gz", gzip(arff)));
+    }
+
+    @Test
+    public void testConcatenatedGzipMembers() throws IOException {
+        byte[] arff = arff();
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        int half = arff.length / 2;
+        members.write(gzip(Arrays.copyOfRange(arff, 0, half)));
+        members.write(gzip(Arrays.copyOfRange(arff, half, arff.length)));
+        assertSameAsArffLoader(write("plain.arff", arff), write("members.arff.gz", members.toByteArray()));
+    }
+
+    @Test
+    public void testBlockGzipFile() throws IOException {
+        byte[] arff = arff();
+        byte[] compressed = blockGzip(arff, 1000);
+        assertTrue(BlockGzipInputStream.isBlockGzip(compressed, 32));
+        assertFalse(BlockGzipInputStream.isBlockGzip(gzip(arff), 32));
+        assertSameAsArffLoader(write("plain.arff", arff), write("bgzf.arff.gz", compressed));
+    }
+
+    @Test
+    public void testBlockGzipInputStream() throws IOException {
+        byte[] data = arff();
+        for (int numThreads = 1; numThreads <= 3; numThreads++) {
+            try (InputStream in = new BlockGzipInputStream(new ByteArrayInputStream(blockGzip(data, 333)), numThreads)) {
+                assertArrayEquals(data, readAll(in));
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    public void testBlockGzipInputStreamDetectsCorruptBlocks() throws IOException {
+        byte[] compressed = blockGzip(arff(), 1000);
+        compressed[compressed.length / 2] ^= 0x55;
+        try (InputStream in = new BlockGzipInputStream(new ByteArrayInputStream(compressed), 2)) {
+            readAll(in);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadAheadInputStream() throws IOException {
+        byte[] data = arff();
+        try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 100, 3)) {
+            assertEquals(data[0] & 0xFF, in.read());
+            byte[] rest = readAll(in);
+            assertEquals(data.length - 1, rest.length);
+            assertArrayEquals(Arrays.copyOfRange(data, 1, data.length), rest);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testReadAheadInputStreamRethrowsErrorsAfterTheData() throws IOException {
+        byte[] data = arff();
+        InputStream source = new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (available() == 0)
+                    throw new IOException("broken source");
+                return super.read(b, off, len);
+            }
+        };
+        ByteArrayOutputStream consumed = new ByteArrayOutputStream();
+        try (InputStream in = new ReadAheadInputStream(source, 64, 2)) {
+            byte[] buffer = new byte[50];
+            for (int n; (n = in.read(buffer)) >= 0; )
+                consumed.write(buffer, 0, n);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("broken source", e.getMessage());
+        }
+        assertArrayEquals(data, consumed.toByteArray());
+    }
+
+    @Test
+    public void testCloseStopsReadAheadThread() throws Exception {
+        boolean[] closed = {false};
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 'a';
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        InputStream in = new ReadAheadInputStream(endless, 16, 2);
+        assertEquals('a', in.read());
+        in.close();
+        assertTrue(closed[0]);
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            assertFalse(thread.getName().equals("ReadAheadInputStream") && thread.isAlive());
+    }
+}
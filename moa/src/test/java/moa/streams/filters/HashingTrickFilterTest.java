@@ -0,0 +1,130 @@
+package moa.streams.filters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.hash.Hashing;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import moa.streams.CachedInstancesStream;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Tests that HashingTrickFilter hashes sparse and dense input to the same values, with sparse or dense output.
+ */
+public class HashingTrickFilterTest {
+
+    private static final int NUM_ATTRIBUTES = 2000;
+
+    private static final int NUM_INSTANCES = 200;
+
+    /**
+     * @return the same random instances, as sparse instances if sparse is set, else as dense instances
+     */
+    private static Instances instances(boolean sparse) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < NUM_ATTRIBUTES; i++)
+            attributes.add(new Attribute("a" + i));
+        attributes.add(new Attribute("class", Arrays.asList("x", "y", "z")));
+        Instances dataset = new Instances("sparse", attributes, NUM_INSTANCES);
+        dataset.setClassIndex(NUM_ATTRIBUTES);
+        Random random = new Random(1);
+        for (int k = 0; k < NUM_INSTANCES; k++) {
+            TreeSet<Integer> used = new TreeSet<>();
+            while (used.size() < 100)
+                used.add(random.nextInt(NUM_ATTRIBUTES));
+            int[] indices = new int[used.size() + 1];
+            double[] values = new double[used.size() + 1];
+            int numValues = 0;
+            for (int i : used) {
+                indices[numValues] = i;
+                values[numValues++] = random.nextInt(5) == 0 ? 0.0 : random.nextGaussian();  // explicit zeros are skipped
+            }
+            indices[numValues] = NUM_ATTRIBUTES;
+            values[numValues] = random.nextInt(3);
+            Instance instance = new SparseInstance(1.0, values, indices, NUM_ATTRIBUTES + 1);
+            if (!sparse)
+                instance = new DenseInstance(1.0, instance.toDoubleArray());
+            instance.setDataset(dataset);
+            dataset.add(instance);
+        }
+        return dataset;
+    }
+
+    private static HashingTrickFilter newFilter(Instances input, int dimension, boolean sparseOutput) {
+        HashingTrickFilter filter = new HashingTrickFilter();
+        filter.dim.setValue(dimension);
+        filter.sparseOutputOption.setValue(sparseOutput);
+        filter.setInputStream(new CachedInstancesStream(input));
+        return filter;
+    }
+
+    private static void assertSameOutput(int dimension, boolean sparseInput, boolean sparseOutput) {
+        Instances input = instances(sparseInput);
+        HashingTrickFilter expected = newFilter(instances(true), dimension, false);
+        HashingTrickFilter actual = newFilter(input, dimension, sparseOutput);
+        for (int k = 0; k < NUM_INSTANCES; k++) {
+            Instance expectedInstance = expected.nextInstance().getData();
+            Instance actualInstance = actual.nextInstance().getData();
+            String message = "instance " + k;
+            assertEquals(message, sparseOutput, actualInstance instanceof SparseInstance);
+            assertEquals(message, dimension + 1, actualInstance.numAttributes());
+            assertArrayEquals(message, expectedInstance.toDoubleArray(), actualInstance.toDoubleArray(), 0.0);
+            assertEquals(message, expectedInstance.classValue(), actualInstance.classValue(), 0.0);
+
+            // the buckets match those of hashing every attribute with murmur3
+            double[] hashed = actual.hashVector(input.instance(k), dimension, Hashing.murmur3_128());
+            double[] values = actualInstance.toDoubleArray();
+            assertArrayEquals(message, hashed, Arrays.copyOf(values, dimension), 0.0);
+            if (sparseOutput) {
+                for (int i = 0; i < actualInstance.numValues() - 1; i++)
+                    assertTrue(message, actualInstance.valueSparse(i) != 0.0);  // only non-zero buckets are stored
+            }
+        }
+        assertEquals(expected.getHeader().numAttributes(), actual.getHeader().numAttributes());
+        assertEquals(dimension, actual.getHeader().classIndex());
+    }
+
+    @Test
+    public void testSparseOutput() {
+        assertSameOutput(1000, true, true);
+    }
+
+    @Test
+    public void testSparseOutputWithCollisions() {
+        assertSameOutput(10, true, true);
+    }
+
+    @Test
+    public void testDenseInput() {
+        assertSameOutput(1000, false, false);
+        assertSameOutput(10, false, false);
+    }
+
+    @Test
+    public void testDenseInputWithSparseOutput() {
+        assertSameOutput(1000, false, true);
+    }
+
+    @Test
+    public void testChangedDimension() {
+        HashingTrickFilter filter = newFilter(instances(true), 1000, true);
+        filter.nextInstance();
+        filter.dim.setValue(10);
+        filter.restart();
+        Instance instance = filter.nextInstance().getData();
+        assertEquals(11, instance.numAttributes());
+        double[] hashed = filter.hashVector(instances(true).instance(0), 10, Hashing.murmur3_128());
+        assertArrayEquals(hashed, Arrays.copyOf(instance.toDoubleArray(), 10), 0.0);
+    }
+}